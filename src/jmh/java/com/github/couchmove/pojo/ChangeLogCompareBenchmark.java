@@ -0,0 +1,69 @@
+package com.github.couchmove.pojo;
+
+import com.vdurmont.semver4j.Semver;
+import com.vdurmont.semver4j.SemverException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.vdurmont.semver4j.Semver.SemverType.LOOSE;
+
+/**
+ * Sorts freshly fetched {@link ChangeLog}s, parsing their versions on each comparison versus once with {@link VersionKey}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChangeLogCompareBenchmark {
+
+    @Param({"100", "5000"})
+    private int size;
+
+    private List<String> versions;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        versions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            versions.add(random.nextInt(100) + "." + random.nextInt(100) + "." + random.nextInt(100));
+        }
+    }
+
+    @Benchmark
+    public List<ChangeLog> parseOnEachComparison() {
+        List<ChangeLog> changeLogs = changeLogs();
+        changeLogs.sort(ChangeLogCompareBenchmark::compareParsing);
+        return changeLogs;
+    }
+
+    @Benchmark
+    public List<ChangeLog> parseOnce() {
+        List<ChangeLog> changeLogs = changeLogs();
+        Collections.sort(changeLogs);
+        return changeLogs;
+    }
+
+    private List<ChangeLog> changeLogs() {
+        List<ChangeLog> changeLogs = new ArrayList<>(size);
+        for (String version : versions) {
+            changeLogs.add(ChangeLog.builder().version(version).build());
+        }
+        return changeLogs;
+    }
+
+    /**
+     * The previous {@link ChangeLog#compareTo(ChangeLog)}
+     */
+    private static int compareParsing(ChangeLog c1, ChangeLog c2) {
+        try {
+            return new Semver(c1.getVersion(), LOOSE).compareTo(new Semver(c2.getVersion(), LOOSE));
+        } catch (SemverException e) {
+            return c1.getVersion().compareTo(c2.getVersion());
+        }
+    }
+}
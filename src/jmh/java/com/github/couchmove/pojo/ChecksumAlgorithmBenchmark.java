@@ -0,0 +1,40 @@
+package com.github.couchmove.pojo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes a change log script with each {@link ChecksumAlgorithm}, streaming it by chunks as when reading a file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChecksumAlgorithmBenchmark {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"SHA_256", "MURMUR3_128", "BLAKE3"})
+    private ChecksumAlgorithm algorithm;
+
+    @Param({"4096", "1048576"})
+    private int size;
+
+    private byte[] content;
+
+    @Setup
+    public void setUp() {
+        content = new byte[size];
+        new Random(42).nextBytes(content);
+    }
+
+    @Benchmark
+    public String hash() {
+        ChecksumAlgorithm.Digest digest = algorithm.newDigest();
+        for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+            digest.update(content, offset, Math.min(CHUNK_SIZE, content.length - offset));
+        }
+        return digest.hex();
+    }
+}
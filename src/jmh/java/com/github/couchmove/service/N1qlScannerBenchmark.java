@@ -0,0 +1,59 @@
+package com.github.couchmove.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a generated N1QL script into requests, with the previous comment stripping regex and split versus {@link N1qlScanner}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class N1qlScannerBenchmark {
+
+    @Param({"1000", "50000"})
+    private int requests;
+
+    private String script;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < requests; i++) {
+            if (i % 10 == 0) {
+                builder.append("/* batch ").append(i / 10).append(" */\n");
+            }
+            builder.append("-- user ").append(i).append('\n')
+                    .append("UPSERT INTO `default` (KEY, VALUE) VALUES ('user::").append(i)
+                    .append("', {\"type\": \"user\", \"name\": \"user ").append(i).append("\"});\n");
+        }
+        script = builder.toString();
+    }
+
+    @Benchmark
+    public List<String> regex() {
+        String commentsRemoved = script.replaceAll("((?:--[^\\n]*)|(?s)(?:\\/\\*.*?\\*\\/))", "")
+                .trim();
+
+        return Arrays.stream(commentsRemoved.split(";"))
+                .map(String::trim)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<N1qlRequest> scanner() throws IOException {
+        List<N1qlRequest> result = new ArrayList<>(requests);
+        N1qlScanner scanner = new N1qlScanner(new StringReader(script));
+        for (N1qlRequest request = scanner.next(); request != null; request = scanner.next()) {
+            result.add(request);
+        }
+        return result;
+    }
+}
@@ -5,19 +5,29 @@ import com.couchbase.client.java.*;
 import com.github.couchmove.exception.CouchmoveException;
 import com.github.couchmove.pojo.*;
 import com.github.couchmove.pojo.Type.Constants;
+import com.github.couchmove.repository.CollectionManifest;
+import com.github.couchmove.repository.ThroughputGovernor;
 import com.github.couchmove.service.*;
+import com.github.couchmove.utils.JsonDocumentReader;
 import com.github.couchmove.utils.Utils;
 import com.google.common.base.Stopwatch;
 import lombok.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.github.couchmove.pojo.Status.*;
 import static com.github.couchmove.pojo.Type.DOCUMENTS;
+import static com.github.couchmove.pojo.Type.JSONL;
+import static com.github.couchmove.pojo.Type.N1QL;
 import static com.github.couchmove.utils.Utils.elapsed;
 import static java.lang.String.format;
 
@@ -74,8 +84,10 @@ public class Couchmove {
      */
     public Couchmove(Bucket bucket, Cluster cluster, String changePath, Map<String, String> customVariables) {
         logger.info("Connected to bucket '{}'", collectionOrBucketName = bucket.name());
-        lockService = new ChangeLockService(bucket, cluster);
-        dbService = new ChangeLogDBService(bucket, cluster, customVariables);
+        ThroughputGovernor governor = new ThroughputGovernor();
+        CollectionManifest manifest = new CollectionManifest(bucket);
+        lockService = new ChangeLockService(bucket, cluster, governor, manifest);
+        dbService = new ChangeLogDBService(bucket, cluster, customVariables, governor, manifest);
         fileService = new ChangeLogFileService(changePath);
     }
 
@@ -109,17 +121,161 @@ public class Couchmove {
      */
     public Couchmove(Collection collection, Cluster cluster, String changePath, Map<String, String> customVariables) {
         logger.info("Connected to collection '{}'", collectionOrBucketName = collection.name());
-        lockService = new ChangeLockService(collection, cluster);
-        dbService = new ChangeLogDBService(collection, cluster, customVariables);
+        ThroughputGovernor governor = new ThroughputGovernor();
+        CollectionManifest manifest = new CollectionManifest(cluster.bucket(collection.bucketName()));
+        lockService = new ChangeLockService(collection, cluster, governor, manifest);
+        dbService = new ChangeLogDBService(collection, cluster, customVariables, governor, manifest);
         fileService = new ChangeLogFileService(changePath);
     }
 
+    /**
+     * Set the maximum number of document upserts kept in flight while importing {@link Type#DOCUMENTS} change logs
+     * <p>
+     * The number of upserts in flight starts low and adapts below this maximum to the latency and temporary failures of the cluster
+     *
+     * @param importConcurrency maximum number of concurrent upserts, {@value DocumentImporter#DEFAULT_CONCURRENCY} by default
+     */
+    public void setImportConcurrency(int importConcurrency) {
+        dbService.setImportConcurrency(importConcurrency);
+    }
+
+    /**
+     * Skip writing imported documents that are unchanged since their last import
+     * <p>
+     * A hash of the content of each imported document is stored in its <code>couchmove.hash</code> extended attribute,
+     * documents whose stored hash matches are not written again
+     * <p>
+     * Each document then costs an additional sub-document lookup round trip, so changed documents are slower to import.
+     * It pays off when most documents of a change log are unchanged, for example when a large import is run again
+     *
+     * @param skipUnchangedDocuments true to compare content hashes before writing documents, false by default
+     */
+    public void setSkipUnchangedDocuments(boolean skipUnchangedDocuments) {
+        dbService.setSkipUnchangedDocuments(skipUnchangedDocuments);
+    }
+
+    /**
+     * Limit the rate of operations sent by migrations, to preserve the latency of a cluster serving traffic
+     *
+     * @param maxOperationsPerSecond maximum number of operations per second, 0 (the default) for no limit
+     */
+    public void setMaxOperationsPerSecond(double maxOperationsPerSecond) {
+        dbService.getThroughputGovernor().setOperationsPerSecond(maxOperationsPerSecond);
+    }
+
+    /**
+     * Limit the volume of documents written by migrations, to preserve the latency of a cluster serving traffic
+     *
+     * @param maxBytesPerSecond maximum number of document bytes written per second, 0 (the default) for no limit
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        dbService.getThroughputGovernor().setBytesPerSecond(maxBytesPerSecond);
+    }
+
+    /**
+     * Cache the checksums of change log files between runs, so unchanged files are not hashed again
+     * <p>
+     * Cached checksums are invalidated when the size, the modification time or the inode of a file changes
+     *
+     * @param checksumCache file of the cache, for example in the build directory or in a user cache directory, null (the default) to disable the cache
+     */
+    public void setChecksumCache(Path checksumCache) {
+        fileService.setChecksumCache(checksumCache);
+    }
+
+    /**
+     * Set the algorithm of the checksums of new change logs
+     * <p>
+     * Checksums recorded with another algorithm are still verified with their own algorithm
+     *
+     * @param checksumAlgorithm the checksum algorithm, {@link ChecksumAlgorithm#SHA_256} by default
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        fileService.setChecksumAlgorithm(checksumAlgorithm);
+    }
+
+    /**
+     * Read the change logs and their checksums from the {@link ChangeLogIndex} of the migration folder, generated at build time,
+     * instead of hashing the change log files
+     * <p>
+     * The index is ignored with a warning if it doesn't list the same change logs as the folder. Modified scripts are not detected,
+     * so the index must be generated again whenever the migration folder changes
+     *
+     * @param useChangeLogIndex true to read the index when present, false by default
+     */
+    public void setUseChangeLogIndex(boolean useChangeLogIndex) {
+        fileService.setUseIndex(useChangeLogIndex);
+    }
+
+    /**
+     * Replace the checksums recorded with another algorithm than {@link #setChecksumAlgorithm(ChecksumAlgorithm)}, once verified
+     *
+     * @param restampChecksums true to re-stamp checksums, false by default
+     */
+    public void setRestampChecksums(boolean restampChecksums) {
+        dbService.setRestampChecksums(restampChecksums);
+    }
+
+    /**
+     * Maintain a summary document of the change logs along with their documents, so their state is read in a single operation
+     * instead of reading the document of each change log. Change logs that are not up-to-date in the summary are still read from their documents
+     * <p>
+     * The CAS of the summarized change log documents is still checked, without reading their content, so documents modified by hand,
+     * for example to reset their checksum, are read again
+     *
+     * @param useChangeLogSummary true to maintain and read the summary, false by default
+     */
+    public void setUseChangeLogSummary(boolean useChangeLogSummary) {
+        dbService.setUseSummary(useChangeLogSummary);
+    }
+
+    /**
+     * Create the indexes of N1QL change logs with a deferred build, then build them with a single request per keyspace
+     * at the end of each change log, so that the indexer scans each keyspace once instead of once per index
+     * <p>
+     * The requests of a change log must then not depend on the indexes it creates. Indexes created with an explicit
+     * <code>defer_build</code> are left as they are
+     *
+     * @param batchIndexBuilds true to batch index builds, false by default
+     * @param watchTimeout     the maximum duration to wait for the built indexes to become online, null to not wait
+     */
+    public void setBatchIndexBuilds(boolean batchIndexBuilds, Duration watchTimeout) {
+        dbService.setBatchIndexBuilds(batchIndexBuilds);
+        dbService.setIndexBuildTimeout(watchTimeout);
+    }
+
+    /**
+     * Run the N1QL requests following a {@link Type#DOCUMENTS} or {@link Type#JSONL} change log consistent with the imported documents only (AT_PLUS),
+     * instead of waiting for the whole bucket to be indexed (REQUEST_PLUS)
+     * <p>
+     * The requests may then miss documents written meanwhile by other clients. Once a request modifies documents
+     * (<code>INSERT</code>, <code>UPSERT</code>, <code>UPDATE</code>, <code>DELETE</code> or <code>MERGE</code>), the following ones are run with REQUEST_PLUS again.
+     * A <code>consistency</code> directive of a request takes precedence
+     *
+     * @param atPlusConsistency true to run requests consistent with the imported documents, false by default
+     */
+    public void setAtPlusConsistency(boolean atPlusConsistency) {
+        dbService.setAtPlusConsistency(atPlusConsistency);
+    }
+
+    /**
+     * Set how the ID of {@link Type#JSONL} documents is determined
+     *
+     * @param documentKey name of the field containing the document ID ({@value JsonDocumentReader#DEFAULT_KEY} by default),
+     *                    or an expression referencing fields : <code>${type}::${id}</code>
+     */
+    public void setDocumentKey(String documentKey) {
+        fileService.setDocumentKey(documentKey);
+    }
+
     /**
      * Launch the migration process :
      * <ol>
-     *     <li> Tries to acquire Couchbase {@link Bucket} lock
      *     <li> Fetch all {@link ChangeLog}s from migration folder
      *     <li> Fetch corresponding {@link ChangeLog}s from {@link Bucket}
+     *     <li> If none is pending, stop without locking the {@link Bucket}
+     *     <li> Tries to acquire Couchbase {@link Bucket} lock
+     *     <li> Fetch again the {@link ChangeLog}s from {@link Bucket}, as other instances may have migrated it meanwhile
      *     <li> Execute found {@link ChangeLog}s : {@link Couchmove#executeMigration(List)}
      * </ol>
      *
@@ -127,13 +283,8 @@ public class Couchmove {
      */
     public void migrate() throws CouchmoveException {
         logger.info("Begin '{}' update", collectionOrBucketName);
+        boolean locked = false;
         try {
-            // Acquire bucket lock
-            if (!lockService.acquireLock()) {
-                logger.error("Couchmove did not acquire '{}' change log lock. Exiting...", collectionOrBucketName);
-                throw new CouchmoveException("Unable to acquire lock");
-            }
-
             // Fetching ChangeLogs from migration directory
             List<ChangeLog> changeLogs = fileService.fetch();
             if (changeLogs.isEmpty()) {
@@ -141,21 +292,113 @@ public class Couchmove {
                 return;
             }
 
-            // Fetching corresponding ChangeLogs from bucket
-            changeLogs = dbService.fetchAndCompare(changeLogs);
+            // Fetching corresponding ChangeLogs from bucket, without lock as nothing is modified
+            List<ChangeLog> plannedChangeLogs = dbService.fetchAndCompare(changeLogs, fileService::calculateChecksum, true);
+            if (!isPending(plannedChangeLogs)) {
+                logger.info("Couchmove did not find any pending change logs");
+                return;
+            }
+
+            // Acquire bucket lock
+            locked = lockService.acquireLock();
+            if (!locked) {
+                logger.error("Couchmove did not acquire '{}' change log lock. Exiting...", collectionOrBucketName);
+                throw new CouchmoveException("Unable to acquire lock");
+            }
+
+            // Verifying the plan against the current state of the ChangeLogs
+            List<ChangeLog> dbChangeLogs = dbService.fetchAndCompare(changeLogs, fileService::calculateChecksum);
+            if (!getCasByVersion(dbChangeLogs).equals(getCasByVersion(plannedChangeLogs))) {
+                logger.info("Change logs were modified by an other instance meanwhile");
+                if (!isPending(dbChangeLogs)) {
+                    logger.info("Couchmove did not find any pending change logs");
+                    return;
+                }
+            }
 
             // Executing migration
-            executeMigration(changeLogs);
+            executeMigration(dbChangeLogs);
+            dbService.logThroughputStalls();
         } catch (Exception e) {
             logger.error("Couchmove Update failed");
             throw new CouchmoveException("Unable to migrate", e);
         } finally {
             // Release lock
-            lockService.releaseLock();
+            if (locked) {
+                lockService.releaseLock();
+            }
         }
         logger.info("Couchmove Update Successful");
     }
 
+    /**
+     * List the {@link ChangeLog}s that {@link #migrate()} would modify, without locking nor writing to the {@link Bucket} :
+     * <ul>
+     *     <li> the ones to execute
+     *     <li> the ones with a lower version than the last executed one, that would be marked as {@link Status#SKIPPED}
+     *     <li> the executed ones whose description or checksum would be updated
+     * </ul>
+     *
+     * @return the pending {@link ChangeLog}s sorted by version
+     * @throws CouchmoveException if the change logs can not be read, or if an executed one was modified
+     */
+    public List<ChangeLog> pendingChangeLogs() throws CouchmoveException {
+        List<ChangeLog> pendingChangeLogs = fetchPlan().stream()
+                .filter(Couchmove::isPending)
+                .collect(Collectors.toList());
+        logger.info("Found {} pending change logs in '{}'", pendingChangeLogs.size(), collectionOrBucketName);
+        return pendingChangeLogs;
+    }
+
+    /**
+     * Check whether {@link #migrate()} would not modify any {@link ChangeLog}, without locking nor writing to the {@link Bucket}, see {@link #pendingChangeLogs()}
+     *
+     * @return true if no {@link ChangeLog} is pending
+     * @throws CouchmoveException if the change logs can not be read, or if an executed one was modified
+     */
+    public boolean isUpToDate() throws CouchmoveException {
+        return !isPending(fetchPlan());
+    }
+
+    /**
+     * @return the {@link ChangeLog}s of the migration folder as they are in the {@link Bucket}, fetched without writing to it
+     */
+    private List<ChangeLog> fetchPlan() {
+        List<ChangeLog> changeLogs;
+        try {
+            changeLogs = fileService.fetch();
+        } catch (IOException e) {
+            throw new CouchmoveException("Unable to read change logs", e);
+        }
+        if (changeLogs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return dbService.fetchAndCompare(changeLogs, fileService::calculateChecksum, true);
+    }
+
+    /**
+     * @param changeLogs {@link ChangeLog}s fetched from {@link Bucket}
+     * @return true if the migration would modify any of the {@link ChangeLog}s, see {@link #isPending(ChangeLog)}
+     */
+    static boolean isPending(List<ChangeLog> changeLogs) {
+        return changeLogs.stream().anyMatch(Couchmove::isPending);
+    }
+
+    /**
+     * @param changeLog {@link ChangeLog} fetched from {@link Bucket}
+     * @return true if the migration would modify the {@link ChangeLog} : not yet executed, or to update
+     */
+    static boolean isPending(ChangeLog changeLog) {
+        return changeLog.getCas() == null || (changeLog.getStatus() != EXECUTED && changeLog.getStatus() != SKIPPED);
+    }
+
+    private static Map<String, Long> getCasByVersion(List<ChangeLog> changeLogs) {
+        // CAS are null for absent or modified change logs
+        Map<String, Long> casByVersion = new HashMap<>();
+        changeLogs.forEach(changeLog -> casByVersion.put(changeLog.getVersion(), changeLog.getCas()));
+        return casByVersion;
+    }
+
     /**
      * Execute the {@link ChangeLog}s
      * <ul>
@@ -171,35 +414,48 @@ public class Couchmove {
         logger.info("Applying change logs...");
         int migrationCount = 0;
         // Get version and order of last executed changeLog
-        ChangeLog lastExecutedChangeLog = changeLogs.stream()
-                .filter(c -> c.getStatus() == EXECUTED)
-                .max(Comparator.naturalOrder())
+        ChangeLog lastExecutedChangeLog = new VersionIndex(changeLogs).getLastExecuted()
                 .orElse(ChangeLog.builder().order(0).build());
+        // Queries are consistent only with the documents imported by this migration
+        dbService.clearImportedMutations();
 
-        for (ChangeLog changeLog : changeLogs) {
-            if (changeLog.getStatus() == EXECUTED) {
-                if (changeLog.getCas() == null) {
-                    logger.info("Updating change log '{}::{}'", changeLog.getVersion(), changeLog.getDescription());
-                    dbService.save(changeLog);
+        try {
+            for (ChangeLog changeLog : changeLogs) {
+                if (changeLog.getStatus() == EXECUTED) {
+                    if (changeLog.getCas() == null) {
+                        logger.info("Updating change log '{}::{}'", changeLog.getVersion(), changeLog.getDescription());
+                        dbService.saveAsync(changeLog);
+                    }
+                    continue;
                 }
-                continue;
-            }
 
-            if (changeLog.getStatus() == SKIPPED) {
-                continue;
-            }
+                if (changeLog.getStatus() == SKIPPED) {
+                    continue;
+                }
 
-            if (changeLog.compareTo(lastExecutedChangeLog) <= 0) {
-                logger.warn("ChangeLog '{}::{}' version is lower than last executed one '{}'. Skipping", changeLog.getVersion(), changeLog.getDescription(), lastExecutedChangeLog.getVersion());
-                changeLog.setStatus(SKIPPED);
-                dbService.save(changeLog);
-                continue;
-            }
+                if (changeLog.compareTo(lastExecutedChangeLog) <= 0) {
+                    logger.warn("ChangeLog '{}::{}' version is lower than last executed one '{}'. Skipping", changeLog.getVersion(), changeLog.getDescription(), lastExecutedChangeLog.getVersion());
+                    changeLog.setStatus(SKIPPED);
+                    dbService.saveAsync(changeLog);
+                    continue;
+                }
 
-            executeMigration(changeLog, lastExecutedChangeLog.getOrder() + 1);
-            lastExecutedChangeLog = changeLog;
-            migrationCount++;
+                // Previous change logs are saved before executing the next one
+                dbService.flush();
+                executeMigration(changeLog, lastExecutedChangeLog.getOrder() + 1);
+                lastExecutedChangeLog = changeLog;
+                migrationCount++;
+            }
+        } catch (RuntimeException e) {
+            // Save the change logs, including the failed one, before the lock is released
+            try {
+                dbService.flush();
+            } catch (RuntimeException flushException) {
+                e.addSuppressed(flushException);
+            }
+            throw e;
         }
+        dbService.flush();
         if (migrationCount == 0) {
             logger.info("No new change logs found");
         } else {
@@ -233,7 +489,7 @@ public class Couchmove {
             throw new CouchmoveException(format("Unable to apply change log '%s::%s'", changeLog.getVersion(), changeLog.getDescription()), e);
         } finally {
             changeLog.setDuration(sw.elapsed(TimeUnit.MILLISECONDS));
-            dbService.save(changeLog);
+            dbService.saveAsync(changeLog);
         }
     }
 
@@ -298,6 +554,7 @@ public class Couchmove {
      * Applies the {@link ChangeLog} according to it's {@link ChangeLog#type} :
      * <ul>
      *     <li> {@link Type#DOCUMENTS} : Imports all {@value Constants#JSON} documents contained in the folder
+     *     <li> {@link Type#JSONL} : Imports all json documents contained in the {@value Constants#JSONL} file
      *     <li> {@link Type#N1QL} : Execute all N1ql query contained in the {@value Constants#N1QL} file
      *     <li> {@link Type#DESIGN_DOC} : Imports {@link com.couchbase.client.java.manager.view.DesignDocument} contained in the {@value Constants#JSON} document
      *     <li> {@link Type#FTS} : Imports Full Text Search index definition contained in the {@value Constants#FTS} document
@@ -309,15 +566,18 @@ public class Couchmove {
     void doExecute(ChangeLog changeLog) {
         Type type = changeLog.getType();
         try {
-            if (type == DOCUMENTS) {
-                dbService.importDocuments(fileService.readDocuments(changeLog.getScript()));
+            if (type == DOCUMENTS || type == JSONL) {
+                try (Stream<Document> documents = fileService.readDocuments(changeLog.getScript())) {
+                    dbService.importDocuments(documents, changeLog);
+                }
+            } else if (type == N1QL) {
+                try (Reader script = fileService.openFile(changeLog.getScript())) {
+                    dbService.executeN1ql(script);
+                }
             } else {
                 var description = changeLog.getDescription().replace(" ", "_");
                 var content = fileService.readFile(changeLog.getScript());
                 switch (type) {
-                    case N1QL:
-                        dbService.executeN1ql(content);
-                        return;
                     case DESIGN_DOC:
                         dbService.importDesignDoc(description, content);
                         return;
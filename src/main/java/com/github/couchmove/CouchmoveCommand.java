@@ -3,11 +3,17 @@ package com.github.couchmove;
 import ch.qos.logback.classic.*;
 import com.couchbase.client.java.Collection;
 import com.couchbase.client.java.*;
+import com.github.couchmove.pojo.ChangeLog;
+import com.github.couchmove.pojo.ChecksumAlgorithm;
+import com.github.couchmove.service.DocumentImporter;
+import com.github.couchmove.utils.JsonDocumentReader;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 
 import static org.slf4j.Logger.ROOT_LOGGER_NAME;
@@ -15,6 +21,11 @@ import static org.slf4j.Logger.ROOT_LOGGER_NAME;
 @Command(name = "couchmove", mixinStandardHelpOptions = true, version = "Couchmove 1.0")
 public class CouchmoveCommand implements Runnable {
 
+    /**
+     * Exit code of the status command when change logs are pending
+     */
+    static final int PENDING_EXIT_CODE = 3;
+
     @Option(names = {"-U", "--URL"}, required = true, description = "The URL of the Couchbase cluster")
     private String url;
     @Option(names = {"-u", "--username"}, required = true, description = "The username for the Couchbase cluster")
@@ -38,6 +49,45 @@ public class CouchmoveCommand implements Runnable {
     @Option(names = "--build-n1ql-indexes", arity = "0..2", paramLabel = "[scopeName[.collectionName]]", hideParamSyntax = true, split = "\\.", description = "Build N1QL Deferred indexes.\nExamples:\n\t--build-n1ql-indexes : Build indexes on the previous scope and collection parameters\n\t--build-n1ql-indexes scopeName : Build all indexes under 'scopeName' scope\n\t--build-n1ql-indexes scopeName.collectionName : Build all indexes under 'scopeName' scope and 'collectionName' collection")
     private List<String> buildN1qlIndexes;
 
+    @Option(names = "--import-concurrency", defaultValue = "" + DocumentImporter.DEFAULT_CONCURRENCY, description = "The maximum number of document upserts kept in flight while importing documents, adapting below it to the cluster load (default: ${DEFAULT-VALUE})")
+    private int importConcurrency;
+
+    @Option(names = "--skip-unchanged-documents", description = "Do not write imported documents whose content is unchanged since their last import, compared with a hash stored in an extended attribute. Each document costs an additional lookup, so it pays off when most documents are unchanged")
+    private boolean skipUnchangedDocuments;
+
+    @Option(names = "--max-ops-per-second", defaultValue = "0", description = "The maximum number of operations per second sent by migrations, 0 for no limit (default: ${DEFAULT-VALUE})")
+    private double maxOperationsPerSecond;
+
+    @Option(names = "--max-bytes-per-second", defaultValue = "0", description = "The maximum number of document bytes written per second by migrations, 0 for no limit (default: ${DEFAULT-VALUE})")
+    private long maxBytesPerSecond;
+
+    @Option(names = "--checksum-cache", arity = "0..1", paramLabel = "<file>", fallbackValue = "${sys:user.home}/.cache/couchmove/checksums.properties", description = "Cache the checksums of unchanged change log files between runs in this file (default file when the option has no value: ${FALLBACK-VALUE})")
+    private Path checksumCache;
+
+    @Option(names = "--checksum-algorithm", defaultValue = "SHA_256", description = "The algorithm of the checksums of new change logs, one of ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE}). MURMUR3_128 is the fastest, BLAKE3 is slower than SHA_256 and only meant for cryptographic strength")
+    private ChecksumAlgorithm checksumAlgorithm;
+
+    @Option(names = "--changelog-index", description = "Read the change logs and their checksums from the index generated at build time in the change log folder, if it lists the same change logs")
+    private boolean changeLogIndex;
+
+    @Option(names = "--restamp-checksums", description = "Replace the verified checksums recorded with another algorithm than --checksum-algorithm")
+    private boolean restampChecksums;
+
+    @Option(names = "--changelog-summary", description = "Maintain a summary document of the change logs, read instead of one document per change log")
+    private boolean changeLogSummary;
+
+    @Option(names = "--batch-index-builds", description = "Create the indexes of N1QL change logs deferred, and build them with one request per keyspace at the end of each change log")
+    private boolean batchIndexBuilds;
+
+    @Option(names = "--index-build-timeout", defaultValue = "0", description = "With --batch-index-builds, the maximum number of seconds to wait for the indexes to become online, 0 to not wait (default: ${DEFAULT-VALUE})")
+    private long indexBuildTimeout;
+
+    @Option(names = "--at-plus-consistency", description = "Run the N1QL requests following a documents import consistent with the imported documents only, instead of the whole bucket")
+    private boolean atPlusConsistency;
+
+    @Option(names = "--document-key", defaultValue = JsonDocumentReader.DEFAULT_KEY, description = "The field containing the ID of JSON Lines documents, or an expression referencing fields like '$${type}::$${id}' (default: ${DEFAULT-VALUE})")
+    private String documentKey;
+
     @Option(names = {"-V", "--variable"}, split = ",", description = "Custom variables in key=value format (e.g. -V key1=value1,key2=value2)")
     private final Map<String, String> customVariables = new HashMap<>();
 
@@ -53,6 +103,27 @@ public class CouchmoveCommand implements Runnable {
 
     @Override
     public void run() {
+        Couchmove couchmove = createCouchmove();
+        couchmove.migrate();
+        if (buildN1qlIndexes != null) {
+            if (buildN1qlIndexes.isEmpty()) {
+                couchmove.buildN1qlDeferredIndexes();
+            } else if (buildN1qlIndexes.size() == 1) {
+                couchmove.buildN1qlDeferredIndexes(buildN1qlIndexes.get(0));
+            } else {
+                couchmove.buildN1qlDeferredIndexes(buildN1qlIndexes.get(0), buildN1qlIndexes.get(1));
+            }
+        }
+    }
+
+    @Command(name = "status", description = "List the change logs a migration would execute, skip or update, without locking nor writing to the bucket, exiting with code " + PENDING_EXIT_CODE + " if any is pending")
+    public int status() {
+        List<ChangeLog> pendingChangeLogs = createCouchmove().pendingChangeLogs();
+        pendingChangeLogs.forEach(changeLog -> System.out.println(changeLog.getVersion() + "::" + changeLog.getDescription()));
+        return pendingChangeLogs.isEmpty() ? 0 : PENDING_EXIT_CODE;
+    }
+
+    private Couchmove createCouchmove() {
         LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
         Logger logger = loggerContext.getLogger(ROOT_LOGGER_NAME);
         if (verbosity.length == 0) {
@@ -66,15 +137,18 @@ public class CouchmoveCommand implements Runnable {
         Collection collection = scope.collection(collectionName);
 
         Couchmove couchmove = new Couchmove(collection, cluster, changeLogPath, customVariables);
-        couchmove.migrate();
-        if (buildN1qlIndexes != null) {
-            if (buildN1qlIndexes.isEmpty()) {
-                couchmove.buildN1qlDeferredIndexes();
-            } else if (buildN1qlIndexes.size() == 1) {
-                couchmove.buildN1qlDeferredIndexes(buildN1qlIndexes.get(0));
-            } else {
-                couchmove.buildN1qlDeferredIndexes(buildN1qlIndexes.get(0), buildN1qlIndexes.get(1));
-            }
-        }
+        couchmove.setImportConcurrency(importConcurrency);
+        couchmove.setSkipUnchangedDocuments(skipUnchangedDocuments);
+        couchmove.setMaxOperationsPerSecond(maxOperationsPerSecond);
+        couchmove.setMaxBytesPerSecond(maxBytesPerSecond);
+        couchmove.setDocumentKey(documentKey);
+        couchmove.setChecksumCache(checksumCache);
+        couchmove.setChecksumAlgorithm(checksumAlgorithm);
+        couchmove.setUseChangeLogIndex(changeLogIndex);
+        couchmove.setRestampChecksums(restampChecksums);
+        couchmove.setUseChangeLogSummary(changeLogSummary);
+        couchmove.setBatchIndexBuilds(batchIndexBuilds, indexBuildTimeout > 0 ? Duration.ofSeconds(indexBuildTimeout) : null);
+        couchmove.setAtPlusConsistency(atPlusConsistency);
+        return couchmove;
     }
 }
@@ -1,14 +1,14 @@
 package com.github.couchmove.pojo;
 
+import com.couchbase.client.core.deps.com.fasterxml.jackson.annotation.JsonIgnore;
 import com.couchbase.client.java.Bucket;
-import com.vdurmont.semver4j.Semver;
-import com.vdurmont.semver4j.SemverException;
 import lombok.*;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static com.vdurmont.semver4j.Semver.SemverType.LOOSE;
+import static lombok.AccessLevel.NONE;
 import static lombok.AccessLevel.PRIVATE;
 
 /**
@@ -54,6 +54,11 @@ public class ChangeLog extends CouchbaseEntity implements Comparable<ChangeLog>
      */
     private String checksum;
 
+    /**
+     * The {@link ChecksumAlgorithm} of the {@link #checksum}, {@link ChecksumAlgorithm#SHA_256} if null
+     */
+    private ChecksumAlgorithm checksumAlgorithm;
+
     /**
      * The OS username of the process that executed the change
      */
@@ -74,6 +79,36 @@ public class ChangeLog extends CouchbaseEntity implements Comparable<ChangeLog>
      */
     private Status status;
 
+    /**
+     * For documents changes, the number of leading documents already imported, from which an interrupted import is resumed
+     */
+    private Long checkpoint;
+
+    /**
+     * The parsed {@link #version}, computed on first comparison
+     */
+    @Getter(NONE)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicReference<VersionKey> versionKey = new AtomicReference<>();
+
+    /**
+     * @return the parsed {@link #version}, null if there is no version
+     */
+    @JsonIgnore
+    public VersionKey getVersionKey() {
+        if (version == null) {
+            return null;
+        }
+        VersionKey key = versionKey.get();
+        if (key == null || !key.getVersion().equals(version)) {
+            key = VersionKey.of(version);
+            versionKey.set(key);
+        }
+        return key;
+    }
+
     @Override
     public int compareTo(@NotNull ChangeLog o) {
         if (version == null && o.version == null) {
@@ -85,10 +120,6 @@ public class ChangeLog extends CouchbaseEntity implements Comparable<ChangeLog>
         if (o.version == null) {
             return 1;
         }
-        try {
-            return new Semver(version, LOOSE).compareTo(new Semver(o.version, LOOSE));
-        } catch (SemverException e) {
-            return version.compareTo(o.version);
-        }
+        return getVersionKey().compareTo(o.getVersionKey());
     }
 }
@@ -0,0 +1,75 @@
+package com.github.couchmove.pojo;
+
+import com.couchbase.client.java.Bucket;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * a {@link CouchbaseEntity} summarizing all the {@link ChangeLog}s of a Couchbase {@link Bucket}, so their state is read in a single operation
+ */
+@EqualsAndHashCode(callSuper = false)
+@Data
+public class ChangeLogSummary extends CouchbaseEntity {
+
+    /**
+     * The summaries of the {@link ChangeLog}s by {@link ChangeLog#version}
+     */
+    private Map<String, Entry> changeLogs = new HashMap<>();
+
+    /**
+     * The summary of a {@link ChangeLog}
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+
+        private String checksum;
+
+        private ChecksumAlgorithm checksumAlgorithm;
+
+        private String description;
+
+        private Status status;
+
+        private Integer order;
+
+        /**
+         * The CAS of the {@link ChangeLog} document when it was summarized
+         */
+        private Long cas;
+
+        public static Entry of(ChangeLog changeLog) {
+            return new Entry(changeLog.getChecksum(), changeLog.getChecksumAlgorithm(), changeLog.getDescription(), changeLog.getStatus(), changeLog.getOrder(), changeLog.getCas());
+        }
+
+        /**
+         * @param changeLog a fetched {@link ChangeLog} with the same version
+         * @return true if the {@link ChangeLog} was executed or skipped, and is unchanged since, so its document doesn't need to be read
+         */
+        public boolean isUpToDate(ChangeLog changeLog) {
+            return (status == Status.EXECUTED || status == Status.SKIPPED)
+                    && checksum != null && checksum.equals(changeLog.getChecksum())
+                    && ChecksumAlgorithm.orDefault(checksumAlgorithm) == ChecksumAlgorithm.orDefault(changeLog.getChecksumAlgorithm())
+                    && description != null && description.equals(changeLog.getDescription());
+        }
+
+        /**
+         * @param changeLog the fetched {@link ChangeLog} with the same version
+         * @return the {@link ChangeLog} as it is in the database, without its execution details
+         */
+        public ChangeLog toChangeLog(ChangeLog changeLog) {
+            ChangeLog dbChangeLog = changeLog.toBuilder()
+                    .status(status)
+                    .order(order)
+                    .build();
+            dbChangeLog.setCas(cas);
+            return dbChangeLog;
+        }
+    }
+}
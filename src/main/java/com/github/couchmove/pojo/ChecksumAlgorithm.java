@@ -0,0 +1,124 @@
+package com.github.couchmove.pojo;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.Blake3;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.security.MessageDigest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Describes the algorithm of the {@link ChangeLog#checksum}
+ * <p>
+ * {@link ChangeLog}s without algorithm were all stamped with {@link #SHA_256}
+ */
+public enum ChecksumAlgorithm {
+
+    /**
+     * Cryptographic SHA-256, the historical algorithm
+     */
+    SHA_256 {
+        private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(DigestUtils::getSha256Digest);
+
+        @Override
+        public Digest newDigest() {
+            MessageDigest digest = digests.get();
+            digest.reset();
+            return new Digest() {
+                @Override
+                public void update(byte[] input, int offset, int length) {
+                    digest.update(input, offset, length);
+                }
+
+                @Override
+                public String hex() {
+                    return Hex.encodeHexString(digest.digest());
+                }
+            };
+        }
+    },
+
+    /**
+     * Non-cryptographic 128 bits MurmurHash3, several times faster than {@link #SHA_256}
+     */
+    MURMUR3_128 {
+        @Override
+        public Digest newDigest() {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            return new Digest() {
+                @Override
+                public void update(byte[] input, int offset, int length) {
+                    hasher.putBytes(input, offset, length);
+                }
+
+                @Override
+                public String hex() {
+                    return hasher.hash().toString();
+                }
+            };
+        }
+    },
+
+    /**
+     * Cryptographic 256 bits BLAKE3, for its cryptographic strength and not for speed :
+     * its pure Java implementation is slower than {@link #SHA_256}, which uses the CPU SHA extensions when available.
+     * Use {@link #MURMUR3_128} for fast checksums
+     */
+    BLAKE3 {
+        @Override
+        public Digest newDigest() {
+            Blake3 blake3 = Blake3.initHash();
+            return new Digest() {
+                @Override
+                public void update(byte[] input, int offset, int length) {
+                    blake3.update(input, offset, length);
+                }
+
+                @Override
+                public String hex() {
+                    return Hex.encodeHexString(blake3.doFinalize(32));
+                }
+            };
+        }
+    };
+
+    /**
+     * @return a new streaming {@link Digest}, to be used by a single thread
+     */
+    public abstract Digest newDigest();
+
+    /**
+     * @param input text to hash
+     * @return hexadecimal hash of the UTF-8 bytes of the input
+     */
+    public String hashHex(String input) {
+        byte[] bytes = input.getBytes(UTF_8);
+        Digest digest = newDigest();
+        digest.update(bytes, 0, bytes.length);
+        return digest.hex();
+    }
+
+    /**
+     * @param algorithm algorithm recorded in a {@link ChangeLog}, possibly null
+     * @return the algorithm, {@link #SHA_256} if null
+     */
+    public static ChecksumAlgorithm orDefault(ChecksumAlgorithm algorithm) {
+        return algorithm == null ? SHA_256 : algorithm;
+    }
+
+    /**
+     * Streaming hash calculation
+     */
+    public interface Digest {
+
+        void update(byte[] input, int offset, int length);
+
+        /**
+         * @return the hexadecimal hash of all the input
+         */
+        String hex();
+    }
+}
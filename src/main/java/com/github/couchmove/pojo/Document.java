@@ -1,15 +1,80 @@
 package com.github.couchmove.pojo;
 
-import lombok.Value;
+import lombok.*;
+import org.apache.commons.io.FilenameUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A json document to import, identified by its path relative to its change log
+ * <p>
+ * Its content is only read when {@link #getContent()} is called, so documents can be streamed without holding all payloads in memory
+ */
 @Value
+@EqualsAndHashCode(exclude = "content")
 public class Document {
 
     String scope;
 
     String collection;
 
-    String fileName;
+    /**
+     * The document ID
+     */
+    String key;
+
+    /**
+     * The path of the document relative to its change log, identifying it
+     */
+    String path;
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    Supplier<byte[]> content;
+
+    private Document(String scope, String collection, String key, String path, Supplier<byte[]> content) {
+        this.scope = scope;
+        this.collection = collection;
+        this.key = key;
+        this.path = path;
+        this.content = content;
+    }
+
+    /**
+     * Document read from a file, whose ID is the file name without its extension
+     */
+    public Document(String scope, String collection, String fileName, Supplier<byte[]> content) {
+        this(scope, collection, FilenameUtils.getBaseName(fileName), Stream.of(scope, collection, fileName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining("/")), content);
+    }
+
+    public Document(String scope, String collection, String fileName, String content) {
+        this(scope, collection, fileName, () -> content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Document with an explicit ID, that is not read from its own file
+     *
+     * @param scope      scope of the document, or null for the change log one
+     * @param collection collection of the document, or null for the change log one
+     * @param key        the document ID
+     * @param path       the path identifying the document in its change log
+     * @param content    the raw UTF-8 content of the document
+     * @return a new {@link Document}
+     */
+    public static Document withKey(String scope, String collection, String key, String path, byte[] content) {
+        return new Document(scope, collection, key, path, () -> content);
+    }
 
-    String content;
+    /**
+     * @return the raw UTF-8 content of the document, read on each call
+     */
+    public byte[] getContent() {
+        return content.get();
+    }
 }
@@ -0,0 +1,58 @@
+package com.github.couchmove.pojo;
+
+import com.couchbase.client.java.kv.MutationState;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Summary of a {@link Document}s import
+ */
+@Value
+public class ImportReport {
+
+    /**
+     * Number of successfully imported documents
+     */
+    long imported;
+
+    /**
+     * Number of documents not written, as their content was unchanged since they were last imported
+     */
+    long unchanged;
+
+    /**
+     * Number of leading documents skipped, as they were imported by a previous run
+     */
+    long skipped;
+
+    /**
+     * Number of leading documents that are all imported, from which a next import can be resumed
+     */
+    long checkpoint;
+
+    /**
+     * Errors of documents that could not be imported, identified by their path
+     */
+    Map<String, Throwable> failures;
+
+    /**
+     * Duration of the whole import
+     */
+    Duration duration;
+
+    /**
+     * Mutation tokens of the written documents, empty if mutation tokens are disabled
+     */
+    MutationState mutationState;
+
+    /**
+     * @return number of imported or unchanged documents per second
+     */
+    public double getThroughput() {
+        long processed = imported + unchanged;
+        long millis = duration.toMillis();
+        return millis == 0 ? processed : processed * 1000d / millis;
+    }
+}
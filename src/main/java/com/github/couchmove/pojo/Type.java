@@ -18,6 +18,11 @@ public enum Type {
      */
     DOCUMENTS(""),
 
+    /**
+     * JSON Lines file, or json array file, containing multiple json documents
+     */
+    JSONL(Constants.JSONL),
+
     /**
      * json document representing a {@link com.couchbase.client.java.manager.view.DesignDocument}
      */
@@ -47,6 +52,7 @@ public enum Type {
 
     public static class Constants {
         public static final String JSON = "json";
+        public static final String JSONL = "jsonl";
         public static final String N1QL = "n1ql";
         public static final String FTS = "fts";
         public static final String EVENTING = "eventing";
@@ -0,0 +1,57 @@
+package com.github.couchmove.pojo;
+
+import com.vdurmont.semver4j.Semver;
+import com.vdurmont.semver4j.SemverException;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.vdurmont.semver4j.Semver.SemverType.LOOSE;
+
+/**
+ * Immutable, pre-parsed {@link ChangeLog#version}, so that versions are parsed once instead of on each comparison
+ * <p>
+ * Versions are compared as loose semantic versions when both are valid, and as strings otherwise
+ */
+@EqualsAndHashCode(of = "version")
+public final class VersionKey implements Comparable<VersionKey> {
+
+    @Getter
+    private final String version;
+
+    @Nullable
+    private final Semver semver;
+
+    private VersionKey(String version, @Nullable Semver semver) {
+        this.version = version;
+        this.semver = semver;
+    }
+
+    /**
+     * @param version the version to parse
+     * @return the parsed version
+     */
+    public static VersionKey of(@NotNull String version) {
+        Semver semver;
+        try {
+            semver = new Semver(version, LOOSE);
+        } catch (SemverException e) {
+            semver = null;
+        }
+        return new VersionKey(version, semver);
+    }
+
+    @Override
+    public int compareTo(@NotNull VersionKey o) {
+        if (semver != null && o.semver != null) {
+            return semver.compareTo(o.semver);
+        }
+        return version.compareTo(o.version);
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.couchmove.repository;
+
+import com.couchbase.client.core.msg.Request;
+import com.couchbase.client.core.msg.Response;
+import com.couchbase.client.core.retry.BestEffortRetryStrategy;
+import com.couchbase.client.core.retry.RetryAction;
+import com.couchbase.client.core.retry.RetryReason;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link BestEffortRetryStrategy} failing fast when the cluster pushes back with a temporary failure,
+ * so the caller sees the backpressure and adapts its concurrency to it
+ * <p>
+ * All the other reasons, like a rebalance moving a vbucket, a collection not yet known by the client or a locked document, are retried as usual
+ */
+public class BackpressureRetryStrategy extends BestEffortRetryStrategy {
+
+    public static final BackpressureRetryStrategy INSTANCE = new BackpressureRetryStrategy();
+
+    private BackpressureRetryStrategy() {
+    }
+
+    @Override
+    public CompletableFuture<RetryAction> shouldRetry(Request<? extends Response> request, RetryReason reason) {
+        if (reason == RetryReason.KV_TEMPORARY_FAILURE) {
+            return CompletableFuture.completedFuture(RetryAction.noRetry());
+        }
+        return super.shouldRetry(request, reason);
+    }
+}
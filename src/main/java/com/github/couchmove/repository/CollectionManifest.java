@@ -0,0 +1,98 @@
+package com.github.couchmove.repository;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.manager.collection.CollectionSpec;
+import com.couchbase.client.java.manager.collection.ScopeSpec;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.couchbase.client.java.manager.collection.GetAllScopesOptions.getAllScopesOptions;
+import static com.github.couchmove.repository.CouchbaseRepositoryImpl.withRetry;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Cache of the scopes and collections of a Couchbase {@link Bucket}, to share between all the repositories of this bucket
+ * <p>
+ * It is loaded lazily with a single management request, and must be {@link #invalidate() invalidated} after any scope or collection DDL.
+ * It also expires after a short delay, to notice the scopes and collections created meanwhile by other processes
+ */
+public class CollectionManifest {
+
+    private static final Logger logger = getLogger(CollectionManifest.class);
+
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(5);
+
+    private final Bucket bucket;
+
+    private final long ttlNanos;
+
+    private volatile List<ScopeSpec> scopes;
+
+    private volatile long fetchedAt;
+
+    public CollectionManifest(Bucket bucket) {
+        this(bucket, DEFAULT_TTL);
+    }
+
+    CollectionManifest(Bucket bucket, Duration ttl) {
+        this.bucket = bucket;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * @return all the scopes of the {@link Bucket}, fetched once until next {@link #invalidate()} or expiration
+     */
+    List<ScopeSpec> getAllScopes() {
+        List<ScopeSpec> result = scopes;
+        if (result == null || isExpired()) {
+            synchronized (this) {
+                result = scopes;
+                if (result == null || isExpired()) {
+                    logger.debug("Fetching scopes of bucket '{}'", bucket.name());
+                    result = bucket.collections().getAllScopes(withRetry(getAllScopesOptions()));
+                    fetchedAt = System.nanoTime();
+                    scopes = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isExpired() {
+        return System.nanoTime() - fetchedAt >= ttlNanos;
+    }
+
+    Optional<ScopeSpec> getScope(String scope) {
+        return getAllScopes().stream()
+                .filter(scopeSpec -> scopeSpec.name().equals(scope))
+                .findFirst();
+    }
+
+    boolean containsCollection(String scope, String collection) {
+        return getScope(scope)
+                .map(scopeSpec -> scopeSpec.collections().stream().anyMatch(c -> c.name().equals(collection)))
+                .orElse(false);
+    }
+
+    /**
+     * @param scope scope name
+     * @return names of all collections of the scope, empty if the scope doesn't exist
+     */
+    Stream<String> getCollectionNames(String scope) {
+        return getScope(scope)
+                .map(scopeSpec -> scopeSpec.collections().stream().map(CollectionSpec::name))
+                .orElseGet(Stream::empty);
+    }
+
+    /**
+     * Forget the cached scopes, so they will be fetched again on next access
+     */
+    void invalidate() {
+        logger.debug("Invalidating scopes of bucket '{}'", bucket.name());
+        scopes = null;
+    }
+}
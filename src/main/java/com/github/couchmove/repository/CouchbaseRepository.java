@@ -1,10 +1,13 @@
 package com.github.couchmove.repository;
 
 import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.kv.MutationResult;
 import com.couchbase.client.java.manager.view.DesignDocument;
 import com.github.couchmove.pojo.CouchbaseEntity;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.List;
 
 /**
  * A repository for encapsulating storage, retrieval, and removal of json documents to Couchbase {@link Bucket}
@@ -28,6 +31,15 @@ public interface CouchbaseRepository<E extends CouchbaseEntity> {
      */
     E save(String id, E entity);
 
+    /**
+     * Convert an {@link CouchbaseEntity} to json document, and save it to Couchbase {@link Bucket} using the reactive API
+     *
+     * @param id     the per-bucket unique document id
+     * @param entity entity to convert and save
+     * @return a {@link Mono} emitting the saved entity with CAS once it is saved
+     */
+    Mono<E> saveAsync(String id, E entity);
+
     /**
      * If the {@link CouchbaseEntity#cas} of the entity is set, tries to replace the document with a Check And Swap operation (for optimistic concurrency)
      * <p>
@@ -61,6 +73,22 @@ public interface CouchbaseRepository<E extends CouchbaseEntity> {
      */
     E findOne(String id);
 
+    /**
+     * Retrieves documents from Couchbase {@link Bucket} by their IDs, keeping several reads in flight
+     *
+     * @param ids the ids of the documents
+     * @return the found and converted {@link CouchbaseEntity}s with CAS set, in the order of the ids, with null for absent ones
+     */
+    List<E> findAll(List<String> ids);
+
+    /**
+     * Retrieves the CAS of documents from Couchbase {@link Bucket} by their IDs, without reading their content
+     *
+     * @param ids the ids of the documents
+     * @return the CAS of the documents, in the order of the ids, with null for absent ones
+     */
+    List<Long> findAllCas(List<String> ids);
+
     /**
      * Save a json document buy its ID
      *
@@ -69,6 +97,49 @@ public interface CouchbaseRepository<E extends CouchbaseEntity> {
      */
     void save(String id, String jsonContent);
 
+    /**
+     * Save a json document by its ID, sending its bytes as they are
+     *
+     * @param id          the per-bucket unique document id
+     * @param jsonContent UTF-8 encoded content of the json document
+     */
+    void save(String id, byte[] jsonContent);
+
+    /**
+     * Save a json document by its ID using the reactive API, so multiple saves can be kept in flight
+     * <p>
+     * Temporary failures are not retried, the caller is expected to back off
+     *
+     * @param id          the per-bucket unique document id
+     * @param jsonContent UTF-8 encoded content of the json document, sent as it is
+     * @return a {@link Mono} emitting the {@link MutationResult} once the document is saved
+     */
+    Mono<MutationResult> saveAsync(String id, byte[] jsonContent);
+
+    /**
+     * Save a json document by its ID using the reactive API, storing its content hash in an extended attribute in the same mutation
+     *
+     * @param id          the per-bucket unique document id
+     * @param jsonContent UTF-8 encoded content of the json document, sent as it is
+     * @param contentHash hash of the content, to be read with {@link #getContentHashAsync(String)}
+     * @return a {@link Mono} emitting the {@link MutationResult} once the document is saved
+     */
+    Mono<MutationResult> saveAsync(String id, byte[] jsonContent, String contentHash);
+
+    /**
+     * Read the content hash stored by {@link #saveAsync(String, byte[], String)}, without reading the document content
+     *
+     * @param id the id of the document
+     * @return a {@link Mono} emitting the content hash, or empty if the document or its hash doesn't exist
+     */
+    Mono<String> getContentHashAsync(String id);
+
+    /**
+     * @return the throughput limits applied to all operations of this repository,
+     * shared with the repositories of its other collections
+     */
+    ThroughputGovernor getThroughputGovernor();
+
     /**
      * Inserts a {@link DesignDocument} into production
      *
@@ -84,6 +155,14 @@ public interface CouchbaseRepository<E extends CouchbaseEntity> {
      */
     void query(String request);
 
+    /**
+     * Queries Couchbase {@link Bucket} with a N1ql Query
+     *
+     * @param request N1ql Query in String format
+     * @param hints   execution options of the query
+     */
+    void query(String request, QueryHints hints);
+
     /**
      * Inserts a Full Text Search Index definition
      *
@@ -138,6 +217,15 @@ public interface CouchbaseRepository<E extends CouchbaseEntity> {
      */
     void buildN1qlDeferredIndexes(String scope);
 
+    /**
+     * Build deferred indexes of a keyspace with a single <code>BUILD INDEX</code> request, so the keyspace is scanned once for all of them
+     *
+     * @param keyspace     the keyspace of the indexes, as in a <code>CREATE INDEX</code> request
+     * @param indexNames   names of the indexes to build, <code>#primary</code> for an unnamed primary index
+     * @param watchTimeout the maximum duration to wait for the indexes to become online, null to not wait
+     */
+    void buildN1qlIndexes(String keyspace, List<String> indexNames, Duration watchTimeout);
+
     /**
      * Watches all indexes, polling the query service until they become
      * "online" or the timeout has expired
@@ -19,8 +19,8 @@ import com.couchbase.client.java.manager.query.QueryIndex;
 import com.couchbase.client.java.manager.search.SearchIndex;
 import com.couchbase.client.java.manager.view.DesignDocument;
 import com.couchbase.client.java.manager.view.View;
-import com.couchbase.client.java.query.QueryOptions;
-import com.couchbase.client.java.query.QueryScanConsistency;
+import com.couchbase.client.java.query.QueryMetaData;
+import com.couchbase.client.java.query.QueryMetrics;
 import com.couchbase.client.java.view.DesignDocumentNamespace;
 import com.github.couchmove.exception.CouchmoveException;
 import com.github.couchmove.pojo.CouchbaseEntity;
@@ -29,18 +29,22 @@ import lombok.*;
 import org.apache.commons.lang.text.StrSubstitutor;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.retry.Retry;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static com.couchbase.client.java.kv.InsertOptions.insertOptions;
 import static com.couchbase.client.java.kv.ReplaceOptions.replaceOptions;
 import static com.couchbase.client.java.manager.collection.CreateCollectionOptions.createCollectionOptions;
 import static com.couchbase.client.java.manager.collection.CreateScopeOptions.createScopeOptions;
-import static com.couchbase.client.java.manager.collection.GetAllScopesOptions.getAllScopesOptions;
 import static com.couchbase.client.java.manager.eventing.UpsertFunctionOptions.upsertFunctionOptions;
 import static com.couchbase.client.java.manager.query.BuildQueryIndexOptions.buildDeferredQueryIndexesOptions;
 import static com.couchbase.client.java.manager.query.GetAllQueryIndexesOptions.getAllQueryIndexesOptions;
@@ -69,6 +73,11 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
     public static final String SCOPE_PARAM = "scope";
     public static final int MAX_ATTEMPTS = 5;
     public static final String DEFAULT = "_default";
+    public static final String CONTENT_HASH_XATTR = "couchmove.hash";
+    public static final int FIND_ALL_CONCURRENCY = 32;
+    public static final String PRIMARY_INDEX = "#primary";
+
+    private static final Pattern COLLECTION_DDL_PATTERN = Pattern.compile("^\\s*(CREATE|DROP)\\s+(SCOPE|COLLECTION)\\b", Pattern.CASE_INSENSITIVE);
 
     private final Bucket bucket;
 
@@ -80,42 +89,114 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
 
     private final Map<String, String> variables;
 
+    private final CollectionManifest manifest;
+
+    /**
+     * Repositories of other collections of the same bucket, shared with them
+     */
+    private final Map<String, CouchbaseRepositoryImpl<E>> repositories;
+
+    /**
+     * Throughput limits of all operations, shared with the repositories of other collections and with the ones given the same governor
+     */
+    private final ThroughputGovernor governor;
+
+    /**
+     * Whether the {@link #collection} is known to exist, otherwise it is created before the first write
+     */
+    private volatile boolean created;
+
     public CouchbaseRepositoryImpl(Cluster cluster, Collection collection, Class<E> entityClass) {
         this(cluster, collection, entityClass, Collections.emptyMap());
     }
 
     public CouchbaseRepositoryImpl(Cluster cluster, Collection collection, Class<E> entityClass, Map<String, String> customVariables) {
+        this(cluster, collection, entityClass, customVariables, new ThroughputGovernor(), new CollectionManifest(cluster.bucket(collection.bucketName())));
+    }
+
+    /**
+     * @param governor throughput limits, to share with the other repositories of the same migrations
+     * @param manifest scopes and collections of the bucket of the collection, to share with the other repositories of the same bucket
+     */
+    public CouchbaseRepositoryImpl(Cluster cluster, Collection collection, Class<E> entityClass, Map<String, String> customVariables, ThroughputGovernor governor, CollectionManifest manifest) {
         this.cluster = cluster;
         this.bucket = cluster.bucket(collection.bucketName());
-        this.collection = getOrCreate(collection);
+        this.manifest = manifest;
+        this.repositories = new ConcurrentHashMap<>();
+        this.governor = governor;
+        this.collection = collection;
         this.entityClass = entityClass;
         this.variables = createVariables(customVariables, this.collection);
     }
 
-    private Collection getOrCreate(Collection collection) {
+    private CouchbaseRepositoryImpl(CouchbaseRepositoryImpl<E> parent, Collection collection) {
+        this.cluster = parent.cluster;
+        this.bucket = parent.bucket;
+        this.manifest = parent.manifest;
+        this.repositories = parent.repositories;
+        this.governor = parent.governor;
+        this.collection = collection;
+        this.entityClass = parent.entityClass;
+        this.variables = createVariables(parent.variables, this.collection);
+        createCollection();
+    }
+
+    /**
+     * Create the scope and the collection of this repository if they don't exist yet
+     * <p>
+     * Repositories of a bucket collection create it before their first write only, so reading a missing collection doesn't create it
+     */
+    private void createCollection() {
+        if (created) {
+            return;
+        }
         String scopeName = collection.scopeName();
         String collectionName = collection.name();
 
-        CollectionManager collections = this.bucket.collections();
-
-        Optional<ScopeSpec> scope = collections
-                .getAllScopes(withRetry(getAllScopesOptions())).stream()
-                .filter(s -> s.name().equals(scopeName))
-                .findFirst();
-        Optional<CollectionSpec> collectionSpec = Optional.empty();
-        if (!scope.isPresent()) {
-            collections.createScope(scopeName, withRetry(createScopeOptions()));
-        } else {
-            ScopeSpec scopeSpec = scope.get();
-            collectionSpec = scopeSpec.collections().stream()
-                    .filter(c -> c.name().equals(collectionName))
-                    .findFirst();
+        if (manifest.containsCollection(scopeName, collectionName)) {
+            created = true;
+            return;
         }
-        if (!collectionSpec.isPresent()) {
+
+        CollectionManager collections = this.bucket.collections();
+        try {
+            if (!manifest.getScope(scopeName).isPresent()) {
+                governor.acquire(0);
+                collections.createScope(scopeName, withRetry(createScopeOptions()));
+            }
+            governor.acquire(0);
             collections.createCollection(CollectionSpec.create(collectionName, scopeName), withRetry(createCollectionOptions()));
+        } catch (ScopeExistsException | CollectionExistsException e) {
+            // Created meanwhile by an other process
+            logger.debug("Collection '{}.{}' already exists", scopeName, collectionName);
+        } finally {
+            manifest.invalidate();
         }
+        created = true;
+    }
 
-        return collection;
+    /**
+     * {@link #createCollection()} on a thread allowed to block, as it may send management requests
+     */
+    private Mono<Void> createCollectionAsync() {
+        if (created) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(this::createCollection)
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * @return false if the collection of this repository doesn't exist, so it contains no document
+     */
+    private boolean collectionExists() {
+        if (created || manifest.containsCollection(collection.scopeName(), collection.name())) {
+            created = true;
+            return true;
+        }
+        // Checked again once the manifest expires or is invalidated, as an other process may create it meanwhile
+        return false;
     }
 
     private Map<String, String> createVariables(Map<String, String> customVariables, Collection collection) {
@@ -132,26 +213,63 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
     }
 
     public CouchbaseRepositoryImpl(Cluster cluster, Bucket bucket, Class<E> entityClass, Map<String, String> customVariables) {
+        this(cluster, bucket, entityClass, customVariables, new ThroughputGovernor(), new CollectionManifest(bucket));
+    }
+
+    /**
+     * @param governor throughput limits, to share with the other repositories of the same migrations
+     * @param manifest scopes and collections of the bucket, to share with the other repositories of the same bucket
+     */
+    public CouchbaseRepositoryImpl(Cluster cluster, Bucket bucket, Class<E> entityClass, Map<String, String> customVariables, ThroughputGovernor governor, CollectionManifest manifest) {
         this.cluster = cluster;
         this.bucket = bucket;
+        this.manifest = manifest;
+        this.repositories = new ConcurrentHashMap<>();
+        this.governor = governor;
         this.collection = bucket.defaultCollection();
         this.entityClass = entityClass;
         this.variables = createVariables(customVariables, this.collection);
+        this.created = true;
     }
 
     @Override
     public CouchbaseRepositoryImpl<E> withCollection(String collection) {
-        return new CouchbaseRepositoryImpl<>(cluster, bucket.scope(this.collection.scopeName()).collection(collection), entityClass, variables);
+        return withCollection(this.collection.scopeName(), collection);
     }
 
     @Override
     public CouchbaseRepositoryImpl<E> withCollection(String scope, String collection) {
-        return new CouchbaseRepositoryImpl<>(cluster, bucket.scope(scope).collection(collection), entityClass, variables);
+        String key = scope + "." + collection;
+        CouchbaseRepositoryImpl<E> repository = repositories.get(key);
+        if (repository != null) {
+            return repository;
+        }
+        // Created out of the map, as creating the collection sends blocking management requests
+        repository = new CouchbaseRepositoryImpl<>(this, bucket.scope(scope).collection(collection));
+        CouchbaseRepositoryImpl<E> existing = repositories.putIfAbsent(key, repository);
+        return existing != null ? existing : repository;
+    }
+
+    @Override
+    public ThroughputGovernor getThroughputGovernor() {
+        return governor;
+    }
+
+    /**
+     * Forget cached scopes and collections, and the repositories created with {@link #withCollection(String, String)}
+     * <p>
+     * Must be called after any scope or collection DDL
+     */
+    public void invalidateCollections() {
+        manifest.invalidate();
+        repositories.clear();
     }
 
     @Override
     public E save(String id, E entity) {
         logger.trace("Save entity '{}' with id '{}'", entity, id);
+        createCollection();
+        governor.acquire(0);
         try {
             MutationResult insertedDocument = collection.upsert(id, entity);
             entity.setCas(insertedDocument.cas());
@@ -161,10 +279,25 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
         }
     }
 
+    @Override
+    public Mono<E> saveAsync(String id, E entity) {
+        logger.trace("Save entity '{}' with id '{}' asynchronously", entity, id);
+        return createCollectionAsync()
+                .then(governor.acquireAsync(0))
+                .then(Mono.defer(() -> collection.reactive().upsert(id, entity)))
+                .map(insertedDocument -> {
+                    entity.setCas(insertedDocument.cas());
+                    return entity;
+                })
+                .onErrorMap(CouchbaseException.class, e -> new CouchmoveException("Unable to save document with id " + id, e));
+    }
+
     @Override
     public E checkAndSave(String id, E entity) {
         logger.trace("Check and save entity '{}' with id '{}'", entity, id);
         MutationResult insertedDocument;
+        createCollection();
+        governor.acquire(0);
         if (entity.getCas() != null) {
             insertedDocument = collection.replace(id, entity, withRetry(replaceOptions().cas(entity.getCas())));
         } else {
@@ -177,6 +310,10 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
     @Override
     public void delete(String id) {
         logger.trace("Remove entity with id '{}'", id);
+        if (!collectionExists()) {
+            return;
+        }
+        governor.acquire(0);
         try {
             collection.remove(id);
         } catch (DocumentNotFoundException e) {
@@ -187,11 +324,12 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
     @Override
     public E findOne(String id) {
         logger.trace("Find entity with id '{}'", id);
+        if (!collectionExists()) {
+            return null;
+        }
+        governor.acquire(0);
         try {
-            GetResult document = collection.get(id, withRetry(GetOptions.getOptions()));
-            E entity = document.contentAs(entityClass);
-            entity.setCas(document.cas());
-            return entity;
+            return toEntity(collection.get(id, withRetry(GetOptions.getOptions())));
         } catch (DocumentNotFoundException e) {
             return null;
         } catch (CouchbaseException e) {
@@ -199,15 +337,107 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
         }
     }
 
+    @Override
+    public List<E> findAll(List<String> ids) {
+        logger.trace("Find {} entities", ids.size());
+        if (!collectionExists()) {
+            return new ArrayList<>(Collections.nCopies(ids.size(), null));
+        }
+        List<Optional<E>> documents = Flux.fromIterable(ids)
+                .flatMapSequential(id -> governor.acquireAsync(0)
+                                .then(Mono.defer(() -> collection.reactive().get(id, withRetry(GetOptions.getOptions()))))
+                                .map(document -> Optional.of(toEntity(document)))
+                                .onErrorResume(DocumentNotFoundException.class, e -> Mono.just(Optional.empty()))
+                                .onErrorMap(CouchbaseException.class, e -> new CouchmoveException("Unable to read document with id " + id, e)),
+                        FIND_ALL_CONCURRENCY)
+                .collectList()
+                .block();
+        return documents.stream()
+                .map(document -> document.orElse(null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> findAllCas(List<String> ids) {
+        logger.trace("Find CAS of {} entities", ids.size());
+        if (!collectionExists()) {
+            return new ArrayList<>(Collections.nCopies(ids.size(), null));
+        }
+        List<Optional<Long>> cas = Flux.fromIterable(ids)
+                .flatMapSequential(id -> governor.acquireAsync(0)
+                                .then(Mono.defer(() -> collection.reactive().exists(id, withRetry(ExistsOptions.existsOptions()))))
+                                .map(result -> result.exists() ? Optional.of(result.cas()) : Optional.<Long>empty())
+                                .onErrorMap(CouchbaseException.class, e -> new CouchmoveException("Unable to read document with id " + id, e)),
+                        FIND_ALL_CONCURRENCY)
+                .collectList()
+                .block();
+        return cas.stream()
+                .map(value -> value.orElse(null))
+                .collect(Collectors.toList());
+    }
+
+    private E toEntity(GetResult document) {
+        E entity = document.contentAs(entityClass);
+        entity.setCas(document.cas());
+        return entity;
+    }
+
     @Override
     public void save(String id, String jsonContent) {
         logger.trace("Save document with id '{}' : \n'{}'", id, jsonContent);
+        byte[] content = jsonContent.getBytes(StandardCharsets.UTF_8);
+        createCollection();
+        governor.acquire(content.length);
+        collection.upsert(id, content, withRetry(UpsertOptions.upsertOptions().transcoder(RawJsonTranscoder.INSTANCE)));
+    }
+
+    @Override
+    public void save(String id, byte[] jsonContent) {
+        logger.trace("Save document with id '{}' ({} bytes)", id, jsonContent.length);
+        createCollection();
+        governor.acquire(jsonContent.length);
         collection.upsert(id, jsonContent, withRetry(UpsertOptions.upsertOptions().transcoder(RawJsonTranscoder.INSTANCE)));
     }
 
+    @Override
+    public Mono<MutationResult> saveAsync(String id, byte[] jsonContent) {
+        logger.trace("Save document with id '{}' ({} bytes)", id, jsonContent.length);
+        return createCollectionAsync()
+                .then(governor.acquireAsync(jsonContent.length))
+                .then(Mono.defer(() -> collection.reactive().upsert(id, jsonContent,
+                        failOnBackpressure(UpsertOptions.upsertOptions().transcoder(RawJsonTranscoder.INSTANCE)))));
+    }
+
+    @Override
+    public Mono<MutationResult> saveAsync(String id, byte[] jsonContent, String contentHash) {
+        logger.trace("Save document with id '{}' ({} bytes) and hash '{}'", id, jsonContent.length, contentHash);
+        return createCollectionAsync()
+                .then(governor.acquireAsync(jsonContent.length))
+                .then(Mono.defer(() -> collection.reactive().mutateIn(id, Arrays.asList(
+                                        MutateInSpec.upsert(CONTENT_HASH_XATTR, contentHash).xattr().createPath(),
+                                        // Empty path replaces the whole document
+                                        MutateInSpec.replace("", jsonContent)),
+                                failOnBackpressure(MutateInOptions.mutateInOptions()
+                                        .storeSemantics(StoreSemantics.UPSERT)
+                                        .serializer(RawJsonSerializer.INSTANCE)))))
+                .cast(MutationResult.class);
+    }
+
+    @Override
+    public Mono<String> getContentHashAsync(String id) {
+        return createCollectionAsync()
+                .then(governor.acquireAsync(0))
+                .then(Mono.defer(() -> collection.reactive().lookupIn(id, Collections.singletonList(LookupInSpec.get(CONTENT_HASH_XATTR).xattr()),
+                        failOnBackpressure(LookupInOptions.lookupInOptions()))))
+                .filter(result -> result.exists(0))
+                .map(result -> result.contentAs(0, String.class))
+                .onErrorResume(DocumentNotFoundException.class, e -> Mono.empty());
+    }
+
     @Override
     public void importDesignDoc(String name, String jsonContent) {
         logger.trace("Import document : \n'{}'", jsonContent);
+        governor.acquire(0);
         bucket.viewIndexes().upsertDesignDocument(toDesignDocument(name, jsonContent), DesignDocumentNamespace.PRODUCTION);
     }
 
@@ -222,13 +452,47 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
 
     @Override
     public void query(String n1qlStatement) {
+        query(n1qlStatement, QueryHints.DEFAULT);
+    }
+
+    @Override
+    public void query(String n1qlStatement, QueryHints hints) {
         String parametrizedStatement = injectParameters(n1qlStatement);
         logger.debug("Execute n1ql request : \n{}", parametrizedStatement);
+        createCollection();
+        governor.acquire(0);
         try {
-            retry(() -> cluster.query(parametrizedStatement, withRetry(QueryOptions.queryOptions().scanConsistency(QueryScanConsistency.REQUEST_PLUS))),
+            // Rows are streamed and discarded as they arrive, so a request returning many rows doesn't pull them all on the heap
+            retry(Mono.defer(() -> cluster.reactive().query(parametrizedStatement, withRetry(hints.toQueryOptions().metrics(true)))
+                            .flatMap(result -> result.rowsAs(byte[].class)
+                                    .reduceWith(() -> new long[2], (counts, row) -> {
+                                        counts[0]++;
+                                        counts[1] += row.length;
+                                        return counts;
+                                    })
+                                    .flatMap(counts -> result.metaData()
+                                            .doOnNext(metaData -> logQueryResult(counts[0], counts[1], metaData))))),
                     "12003", "12021");
         } catch (Exception e) {
             throw new CouchmoveException("Unable to execute n1ql request", e);
+        } finally {
+            if (COLLECTION_DDL_PATTERN.matcher(parametrizedStatement).find()) {
+                invalidateCollections();
+            }
+        }
+    }
+
+    private static void logQueryResult(long rows, long bytes, QueryMetaData metaData) {
+        metaData.warnings().forEach(warning -> logger.warn("N1ql request warning {} : {}", warning.code(), warning.message()));
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        Optional<QueryMetrics> metrics = metaData.metrics();
+        if (metrics.isPresent()) {
+            logger.debug("N1ql request returned {} rows ({} bytes) and mutated {} documents in {}",
+                    rows, bytes, metrics.get().mutationCount(), metrics.get().executionTime());
+        } else {
+            logger.debug("N1ql request returned {} rows ({} bytes)", rows, bytes);
         }
     }
 
@@ -236,6 +500,7 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
     public void importFtsIndex(String name, String jsonContent) {
         jsonContent = injectParameters(jsonContent);
         logger.trace("Import FTS index : \n'{}'", jsonContent);
+        governor.acquire(0);
         try {
             CustomSearchIndex searchIndex = getJsonMapper().readValue(jsonContent, CustomSearchIndex.class);
             retry(() -> cluster.searchIndexes().upsertIndex(searchIndex, withRetry(upsertSearchIndexOptions())), "doesn't belong to scope");
@@ -272,6 +537,7 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
         logger.debug("Import {} Eventing Functions", functions.length);
         for (int i = 0; i < functions.length; i++) {
             var function = functions[i];
+            governor.acquire(0);
             try {
                 cluster.eventingFunctions().upsertFunction(function, withRetry(upsertFunctionOptions()));
             } catch (CouchbaseException e) {
@@ -320,6 +586,7 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
         if (!DEFAULT.equals(scope) || !DEFAULT.equals(collection)) {
             buildQueryIndexOptions = buildQueryIndexOptions.scopeName(scope).collectionName(collection);
         }
+        governor.acquire(0);
         try {
             cluster.queryIndexes().buildDeferredIndexes(getBucketName(), buildQueryIndexOptions);
         } catch (CouchbaseException e) {
@@ -334,10 +601,7 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
     @Override
     public void buildN1qlDeferredIndexes(String scope) {
         logger.info("Build Deferred N1QL Indexes for scope '{}'", scope);
-        bucket.collections().getAllScopes(withRetry(getAllScopesOptions())).stream()
-                .filter(scopeSpec -> scopeSpec.name().equals(scope))
-                .flatMap(scopeSpec -> scopeSpec.collections().stream())
-                .map(CollectionSpec::name)
+        manifest.getCollectionNames(scope)
                 .forEach(collection -> buildN1qlDeferredIndexes(scope, collection));
     }
 
@@ -347,6 +611,68 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
         watchN1qlIndexes(collection.scopeName(), collection.name(), duration);
     }
 
+    @Override
+    public void buildN1qlIndexes(String keyspace, List<String> indexNames, Duration watchTimeout) {
+        logger.info("Build {} deferred N1QL indexes on '{}'", indexNames.size(), keyspace);
+        try {
+            query(buildIndexStatement(keyspace, indexNames));
+        } catch (CouchmoveException e) {
+            if (!isIndexAlreadyBuilt(e)) {
+                throw e;
+            }
+            // Some indexes already existed, build the others one by one
+            logger.debug("Some indexes on '{}' are already built, building them one by one", keyspace);
+            for (String indexName : indexNames) {
+                try {
+                    query(buildIndexStatement(keyspace, Collections.singletonList(indexName)));
+                } catch (CouchmoveException buildException) {
+                    if (!isIndexAlreadyBuilt(buildException)) {
+                        throw buildException;
+                    }
+                }
+            }
+        }
+        if (watchTimeout != null) {
+            watchIndexes(injectParameters(keyspace), indexNames, watchTimeout);
+        }
+    }
+
+    private static String buildIndexStatement(String keyspace, List<String> indexNames) {
+        return "BUILD INDEX ON " + keyspace + "(" + indexNames.stream()
+                .map(indexName -> indexName.startsWith("`") ? indexName : "`" + indexName + "`")
+                .collect(Collectors.joining(", ")) + ")";
+    }
+
+    private static boolean isIndexAlreadyBuilt(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("already built")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void watchIndexes(String keyspace, List<String> indexNames, Duration watchTimeout) {
+        // [namespace:]bucket[.scope.collection]
+        List<String> path = Arrays.stream(keyspace.replaceFirst("^\\s*\\w+:", "").split("\\.(?=(?:[^`]*`[^`]*`)*[^`]*$)"))
+                .map(part -> part.trim().replace("`", ""))
+                .collect(Collectors.toList());
+        String bucketName = path.size() == 2 ? getBucketName() : path.get(0);
+        var watchQueryIndexesOptions = watchQueryIndexesOptions()
+                .watchPrimary(indexNames.stream().anyMatch(indexName -> indexName.replace("`", "").equals(PRIMARY_INDEX)));
+        if (path.size() >= 2) {
+            watchQueryIndexesOptions = watchQueryIndexesOptions
+                    .scopeName(path.get(path.size() - 2))
+                    .collectionName(path.get(path.size() - 1));
+        }
+        List<String> names = indexNames.stream()
+                .map(indexName -> indexName.replace("`", ""))
+                .filter(indexName -> !indexName.equals(PRIMARY_INDEX))
+                .collect(Collectors.toList());
+        logger.info("Waiting for {} N1QL indexes on '{}' to be online", indexNames.size(), keyspace);
+        cluster.queryIndexes().watchIndexes(bucketName, names, watchTimeout, watchQueryIndexesOptions);
+    }
+
     @Override
     public void watchN1qlIndexes(String scope, String collection, Duration duration) {
         var getAllIndexesOptions = withRetry(getAllQueryIndexesOptions());
@@ -364,10 +690,7 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
     @Override
     public void watchN1qlIndexes(String scope, Duration duration) {
         logger.info("Waiting for {} for N1QL indexes in scope {} to be ready", duration.toString().replace("PT", ""), scope);
-        bucket.collections().getAllScopes(withRetry(getAllScopesOptions())).stream()
-                .filter(scopeSpec -> scopeSpec.name().equals(scope))
-                .flatMap(scopeSpec -> scopeSpec.collections().stream())
-                .map(CollectionSpec::name)
+        manifest.getCollectionNames(scope)
                 .forEach(collection -> watchN1qlIndexes(scope, collection, duration));
     }
 
@@ -378,13 +701,23 @@ public class CouchbaseRepositoryImpl<E extends CouchbaseEntity> implements Couch
         return objectMapper;
     }
 
-    private static <SELF extends CommonOptions<SELF>> SELF withRetry(SELF options) {
+    static <SELF extends CommonOptions<SELF>> SELF withRetry(SELF options) {
         return options.retryStrategy(BestEffortRetryStrategy.INSTANCE);
     }
 
+    /**
+     * Temporary failures of asynchronous operations are not retried by the SDK, so the caller sees the backpressure of the cluster and adapts to it
+     */
+    static <SELF extends CommonOptions<SELF>> SELF failOnBackpressure(SELF options) {
+        return options.retryStrategy(BackpressureRetryStrategy.INSTANCE);
+    }
+
     private static void retry(Runnable runnable, String... errorContains) {
-        Mono
-                .defer(() -> Mono.fromRunnable(runnable))
+        retry(Mono.defer(() -> Mono.fromRunnable(runnable)), errorContains);
+    }
+
+    private static void retry(Mono<?> request, String... errorContains) {
+        request
                 .retryWhen(Retry.backoff(MAX_ATTEMPTS, Duration.ofMillis(500))
                         .filter(t -> Arrays.stream(errorContains).anyMatch(e -> t.getMessage().contains(e)))
                         .doBeforeRetry(retrySignal ->
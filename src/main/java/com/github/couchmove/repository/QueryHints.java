@@ -0,0 +1,163 @@
+package com.github.couchmove.repository;
+
+import com.couchbase.client.java.kv.MutationState;
+import com.couchbase.client.java.query.QueryOptions;
+import com.couchbase.client.java.query.QueryScanConsistency;
+import com.github.couchmove.exception.CouchmoveException;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Execution options of a N1QL request, set by directives in a comment preceding it in a N1QL change log :
+ * <pre>-- @couchmove consistency=not_bounded maxParallelism=8 timeout=30m</pre>
+ * Options that are not set keep their default value, and requests are run with {@link QueryScanConsistency#REQUEST_PLUS} by default,
+ * or consistent with {@link #consistentWith} when it is set
+ */
+@Value
+@Builder(toBuilder = true)
+public class QueryHints {
+
+    public static final QueryHints DEFAULT = QueryHints.builder().build();
+
+    public static final String DIRECTIVE = "@couchmove";
+
+    private static final Pattern DIRECTIVE_PATTERN = Pattern.compile("^--\\s*" + DIRECTIVE + "\\b(.*)$");
+
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)(ms|s|m|h)");
+
+    QueryScanConsistency consistency;
+
+    Integer maxParallelism;
+
+    Integer pipelineBatch;
+
+    Integer pipelineCap;
+
+    Integer scanCap;
+
+    Duration timeout;
+
+    Boolean readonly;
+
+    /**
+     * Mutations the request must see (AT_PLUS consistency), used only when {@link #consistency} is not set
+     */
+    MutationState consistentWith;
+
+    /**
+     * @param comment a single line comment
+     * @return true if the comment contains directives
+     */
+    public static boolean isDirective(String comment) {
+        return DIRECTIVE_PATTERN.matcher(comment.trim()).matches();
+    }
+
+    /**
+     * Apply the directives of a comment to these hints
+     *
+     * @param comment a single line comment with directives, see {@link #isDirective(String)}
+     * @return new hints, with the options of the directives
+     * @throws CouchmoveException if a directive is unknown or has an invalid value
+     */
+    public QueryHints with(String comment) {
+        Matcher matcher = DIRECTIVE_PATTERN.matcher(comment.trim());
+        if (!matcher.matches()) {
+            throw new CouchmoveException("Invalid directive comment '" + comment + "'");
+        }
+        QueryHintsBuilder builder = toBuilder();
+        for (String directive : matcher.group(1).trim().split("\\s+")) {
+            if (directive.isEmpty()) {
+                continue;
+            }
+            String[] keyValue = directive.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new CouchmoveException("Invalid directive '" + directive + "', expected key=value");
+            }
+            String value = keyValue[1];
+            try {
+                switch (keyValue[0]) {
+                    case "consistency":
+                        builder.consistency(QueryScanConsistency.valueOf(value.toUpperCase(Locale.ROOT)));
+                        break;
+                    case "maxParallelism":
+                        builder.maxParallelism(Integer.parseInt(value));
+                        break;
+                    case "pipelineBatch":
+                        builder.pipelineBatch(Integer.parseInt(value));
+                        break;
+                    case "pipelineCap":
+                        builder.pipelineCap(Integer.parseInt(value));
+                        break;
+                    case "scanCap":
+                        builder.scanCap(Integer.parseInt(value));
+                        break;
+                    case "timeout":
+                        builder.timeout(parseDuration(value));
+                        break;
+                    case "readonly":
+                        builder.readonly(Boolean.parseBoolean(value));
+                        break;
+                    default:
+                        throw new CouchmoveException("Unknown directive '" + keyValue[0] + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new CouchmoveException("Invalid value of directive '" + directive + "'", e);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return new {@link QueryOptions} with these hints
+     */
+    public QueryOptions toQueryOptions() {
+        QueryOptions options = QueryOptions.queryOptions();
+        if (consistency == null && consistentWith != null) {
+            options.consistentWith(consistentWith);
+        } else {
+            options.scanConsistency(consistency == null ? QueryScanConsistency.REQUEST_PLUS : consistency);
+        }
+        if (maxParallelism != null) {
+            options.maxParallelism(maxParallelism);
+        }
+        if (pipelineBatch != null) {
+            options.pipelineBatch(pipelineBatch);
+        }
+        if (pipelineCap != null) {
+            options.pipelineCap(pipelineCap);
+        }
+        if (scanCap != null) {
+            options.scanCap(scanCap);
+        }
+        if (timeout != null) {
+            options.timeout(timeout);
+        }
+        if (readonly != null) {
+            options.readonly(readonly);
+        }
+        return options;
+    }
+
+    private static Duration parseDuration(String value) {
+        Matcher matcher = DURATION_PATTERN.matcher(value);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid duration '" + value + "', expected a number followed by ms, s, m or h");
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            default:
+                return Duration.ofHours(amount);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.couchmove.repository;
+
+import com.couchbase.client.java.codec.DefaultJsonSerializer;
+import com.couchbase.client.java.codec.JsonSerializer;
+import com.couchbase.client.java.codec.TypeRef;
+
+/**
+ * {@link JsonSerializer} sending <code>byte[]</code> values as they are, as they already contain encoded json,
+ * and serializing any other value as json
+ * <p>
+ * Sub-document operations have no transcoder, this serializer is their equivalent of {@link com.couchbase.client.java.codec.RawJsonTranscoder}
+ */
+class RawJsonSerializer implements JsonSerializer {
+
+    static final RawJsonSerializer INSTANCE = new RawJsonSerializer();
+
+    private final JsonSerializer delegate = DefaultJsonSerializer.create();
+
+    private RawJsonSerializer() {
+    }
+
+    @Override
+    public byte[] serialize(Object input) {
+        if (input instanceof byte[]) {
+            return (byte[]) input;
+        }
+        return delegate.serialize(input);
+    }
+
+    @Override
+    public <T> T deserialize(Class<T> target, byte[] input) {
+        return delegate.deserialize(target, input);
+    }
+
+    @Override
+    public <T> T deserialize(TypeRef<T> target, byte[] input) {
+        return delegate.deserialize(target, input);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.couchmove.repository;
+
+import com.github.couchmove.utils.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static com.github.couchmove.utils.Utils.prettyFormatDuration;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Limits the operations per second and bytes per second sent to the cluster by a {@link CouchbaseRepository},
+ * so migrations can run against a cluster serving traffic
+ * <p>
+ * Both limits are disabled by default
+ */
+public class ThroughputGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThroughputGovernor.class);
+
+    private volatile TokenBucket operations;
+
+    private volatile TokenBucket bytes;
+
+    /**
+     * @param operationsPerSecond maximum number of operations per second, 0 or less to disable the limit
+     */
+    public void setOperationsPerSecond(double operationsPerSecond) {
+        operations = operationsPerSecond > 0 ? new TokenBucket("operations", operationsPerSecond) : null;
+    }
+
+    /**
+     * @param bytesPerSecond maximum number of written document bytes per second, 0 or less to disable the limit
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        bytes = bytesPerSecond > 0 ? new TokenBucket("bytes", bytesPerSecond) : null;
+    }
+
+    /**
+     * Wait until an operation of the given size is allowed, blocking the current thread
+     *
+     * @param size number of bytes sent by the operation
+     */
+    void acquire(long size) {
+        TokenBucket operations = this.operations;
+        TokenBucket bytes = this.bytes;
+        if (operations != null) {
+            operations.acquire(1);
+        }
+        if (bytes != null && size > 0) {
+            bytes.acquire(size);
+        }
+    }
+
+    /**
+     * @param size number of bytes sent by the operation
+     * @return a {@link Mono} completing once an operation of the given size is allowed
+     */
+    Mono<Void> acquireAsync(long size) {
+        TokenBucket operations = this.operations;
+        TokenBucket bytes = this.bytes;
+        Mono<Void> result = Mono.empty();
+        if (operations != null) {
+            result = result.then(operations.acquireAsync(1));
+        }
+        if (bytes != null && size > 0) {
+            result = result.then(bytes.acquireAsync(size));
+        }
+        return result;
+    }
+
+    /**
+     * @return the time operations were stalled by the operations limit, cumulated over concurrent operations
+     */
+    public Duration getOperationsStallTime() {
+        return getStallTime(operations);
+    }
+
+    /**
+     * @return the time operations were stalled by the bytes limit, cumulated over concurrent operations
+     */
+    public Duration getBytesStallTime() {
+        return getStallTime(bytes);
+    }
+
+    /**
+     * Log how long each enabled limit stalled operations
+     */
+    public void logStallTimes() {
+        log(operations);
+        log(bytes);
+    }
+
+    private static Duration getStallTime(TokenBucket bucket) {
+        return bucket == null ? Duration.ZERO : bucket.getStallTime();
+    }
+
+    private static void log(TokenBucket bucket) {
+        if (bucket == null) {
+            return;
+        }
+        long stallMillis = bucket.getStallTime().toMillis();
+        if (stallMillis == 0) {
+            logger.info("Throughput limit of {} per second did not stall operations", bucket.getName());
+        } else {
+            logger.info("Throughput limit of {} per second stalled operations for {}", bucket.getName(), prettyFormatDuration(stallMillis, MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.couchmove.service;
+
+import com.couchbase.client.core.error.RequestCanceledException;
+import com.couchbase.client.core.error.TemporaryFailureException;
+import com.couchbase.client.core.msg.CancellationReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * AIMD (Additive Increase, Multiplicative Decrease) limit of the asynchronous operations kept in flight,
+ * adapting to the backpressure of the cluster
+ * <p>
+ * The limit grows while operations succeed : by one per success at first (slow start), then by one per round of {@link #getLimit()} successes.
+ * It is halved when an operation fails with a {@link TemporaryFailureException} or a {@link RequestCanceledException} because too many requests were in retry,
+ * or when the p99 latency of the last {@link #WINDOW_SIZE} operations rises above {@link #LATENCY_TOLERANCE} times its baseline.
+ * Operations failed by backpressure are retried with a backoff, once a permit is available again
+ * <p>
+ * Operations waiting for a permit are started on the thread completing the operation releasing it, usually a SDK IO thread,
+ * so they must not block
+ */
+class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    static final int MIN_LIMIT = 1;
+
+    static final int INITIAL_LIMIT = 4;
+
+    static final int WINDOW_SIZE = 100;
+
+    static final double LATENCY_TOLERANCE = 2;
+
+    static final double BACKOFF_RATIO = 0.5;
+
+    static final int MAX_RETRIES = 10;
+
+    static final Duration MIN_BACKOFF = Duration.ofMillis(10);
+
+    static final Duration MAX_BACKOFF = Duration.ofSeconds(1);
+
+    private final int maxLimit;
+
+    private double limit;
+
+    private boolean slowStart = true;
+
+    private int inFlight;
+
+    private final Deque<MonoSink<Void>> waiters = new ArrayDeque<>();
+
+    private final long[] latencies = new long[WINDOW_SIZE];
+
+    private int samples;
+
+    /**
+     * p99 latency of healthy windows, 0 until the first window completes
+     */
+    private long baselineP99;
+
+    /**
+     * Operations started before the last decrease were issued with the previous limit, their failures should not decrease it again
+     */
+    private long lastDecrease = System.nanoTime() - 1;
+
+    AdaptiveConcurrencyLimiter(int maxLimit) {
+        checkArgument(maxLimit >= MIN_LIMIT, "Maximum concurrency should be positive : %s", maxLimit);
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(INITIAL_LIMIT, maxLimit);
+    }
+
+    /**
+     * Run an operation once a permit is available, retrying it if it fails because of backpressure
+     *
+     * @param operation supplier of the operation, called for each attempt, that must not block
+     * @return a {@link Mono} of the operation result
+     */
+    <T> Mono<T> run(Supplier<Mono<T>> operation) {
+        Mono<T> attempt = acquire().then(Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.defer(operation)
+                    .doOnSuccess(result -> onSuccess(start, System.nanoTime() - start))
+                    .doOnError(e -> {
+                        if (isBackpressure(e)) {
+                            onBackpressure(start);
+                        }
+                    })
+                    .doFinally(signal -> release());
+        }));
+        return attempt.retryWhen(Retry.backoff(MAX_RETRIES, MIN_BACKOFF)
+                .maxBackoff(MAX_BACKOFF)
+                .filter(AdaptiveConcurrencyLimiter::isBackpressure)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * @return the current number of operations allowed in flight
+     */
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return true if the operation failed because the cluster or the SDK is overloaded, false for any other error,
+     * including requests cancelled on shutdown or timeout
+     */
+    static boolean isBackpressure(Throwable e) {
+        return e instanceof TemporaryFailureException
+                || e instanceof RequestCanceledException
+                && CancellationReason.TOO_MANY_REQUESTS_IN_RETRY.equals(((RequestCanceledException) e).reason());
+    }
+
+    synchronized void onSuccess(long start, long latency) {
+        latencies[samples++] = latency;
+        if (samples == WINDOW_SIZE) {
+            samples = 0;
+            long p99 = percentile99();
+            if (baselineP99 == 0 || p99 < baselineP99) {
+                baselineP99 = p99;
+            } else if (p99 > baselineP99 * LATENCY_TOLERANCE) {
+                decrease(start, "p99 latency rose to " + TimeUnit.NANOSECONDS.toMillis(p99) + " ms");
+                return;
+            } else {
+                // Let the baseline follow a slowly degrading latency
+                baselineP99 += (p99 - baselineP99) / 10;
+            }
+        }
+        if (limit < maxLimit) {
+            limit = Math.min(maxLimit, limit + (slowStart ? 1 : 1 / limit));
+        }
+    }
+
+    synchronized void onBackpressure(long start) {
+        decrease(start, "backpressure");
+    }
+
+    private void decrease(long start, String reason) {
+        if (start - lastDecrease <= 0) {
+            return;
+        }
+        limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+        slowStart = false;
+        lastDecrease = System.nanoTime();
+        logger.debug("Decreasing concurrency limit to {} because of {}", (int) limit, reason);
+    }
+
+    private long percentile99() {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(WINDOW_SIZE * 0.99) - 1];
+    }
+
+    private Mono<Void> acquire() {
+        return Mono.create(sink -> {
+            synchronized (this) {
+                if (inFlight >= (int) limit) {
+                    waiters.add(sink);
+                    sink.onCancel(() -> cancel(sink));
+                    return;
+                }
+                inFlight++;
+                sink.onCancel(() -> cancel(sink));
+            }
+            sink.success();
+        });
+    }
+
+    /**
+     * A sink cancelled before it is completed either still waits for a permit, or was granted one that is not used
+     */
+    private void cancel(MonoSink<Void> sink) {
+        boolean granted;
+        synchronized (this) {
+            granted = !waiters.remove(sink);
+        }
+        if (granted) {
+            release();
+        }
+    }
+
+    private void release() {
+        List<MonoSink<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                inFlight++;
+                granted.add(waiters.poll());
+            }
+        }
+        // Waiters resume their operation, out of the lock
+        granted.forEach(MonoSink::success);
+    }
+}
@@ -5,12 +5,15 @@ import com.couchbase.client.core.error.DocumentExistsException;
 import com.couchbase.client.java.*;
 import com.github.couchmove.exception.CouchmoveException;
 import com.github.couchmove.pojo.ChangeLock;
+import com.github.couchmove.repository.CollectionManifest;
 import com.github.couchmove.repository.CouchbaseRepository;
 import com.github.couchmove.repository.CouchbaseRepositoryImpl;
+import com.github.couchmove.repository.ThroughputGovernor;
 import com.github.couchmove.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.UUID;
 
@@ -31,11 +34,27 @@ public class ChangeLockService {
     private String uuid;
 
     public ChangeLockService(Bucket bucket, Cluster cluster) {
-        this.repository = new CouchbaseRepositoryImpl<>(cluster, bucket, ChangeLock.class);
+        this(bucket, cluster, new ThroughputGovernor(), new CollectionManifest(bucket));
+    }
+
+    /**
+     * @param governor throughput limits of the migrations, shared with the {@link ChangeLogDBService}
+     * @param manifest scopes and collections of the bucket, shared with the {@link ChangeLogDBService}
+     */
+    public ChangeLockService(Bucket bucket, Cluster cluster, ThroughputGovernor governor, CollectionManifest manifest) {
+        this.repository = new CouchbaseRepositoryImpl<>(cluster, bucket, ChangeLock.class, Collections.emptyMap(), governor, manifest);
     }
 
     public ChangeLockService(Collection collection, Cluster cluster) {
-        this.repository = new CouchbaseRepositoryImpl<>(cluster, collection, ChangeLock.class);
+        this(collection, cluster, new ThroughputGovernor(), new CollectionManifest(cluster.bucket(collection.bucketName())));
+    }
+
+    /**
+     * @param governor throughput limits of the migrations, shared with the {@link ChangeLogDBService}
+     * @param manifest scopes and collections of the bucket of the collection, shared with the {@link ChangeLogDBService}
+     */
+    public ChangeLockService(Collection collection, Cluster cluster, ThroughputGovernor governor, CollectionManifest manifest) {
+        this.repository = new CouchbaseRepositoryImpl<>(cluster, collection, ChangeLock.class, Collections.emptyMap(), governor, manifest);
     }
 
     /**
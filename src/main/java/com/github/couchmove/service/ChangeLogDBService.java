@@ -1,20 +1,35 @@
 package com.github.couchmove.service;
 
+import com.couchbase.client.core.error.CasMismatchException;
+import com.couchbase.client.core.error.DocumentExistsException;
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.Cluster;
+import com.couchbase.client.java.kv.MutationState;
 import com.couchbase.client.java.manager.view.DesignDocument;
 import com.github.couchmove.exception.CouchmoveException;
 import com.github.couchmove.pojo.*;
+import com.github.couchmove.repository.CollectionManifest;
 import com.github.couchmove.repository.CouchbaseRepository;
 import com.github.couchmove.repository.CouchbaseRepositoryImpl;
-import lombok.var;
-import org.apache.commons.io.FilenameUtils;
+import com.github.couchmove.repository.QueryHints;
+import com.github.couchmove.repository.ThroughputGovernor;
+import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for fetching and executing {@link ChangeLog}s
@@ -28,18 +43,134 @@ public class ChangeLogDBService {
 
     public static final String PREFIX_ID = "changelog::";
 
+    public static final String SUMMARY_ID = "changelog-summary";
+
+    private static final int SUMMARY_MAX_ATTEMPTS = 5;
+
+    /**
+     * Maximum number of {@link ChangeLog} saves kept in flight by {@link #saveAsync(ChangeLog)}
+     */
+    public static final int SAVE_CONCURRENCY = 16;
+
+    private static final String KEYSPACE_PART = "(?:`[^`]+`|[\\w${}-]+)";
+
+    private static final Pattern CREATE_INDEX_PATTERN = Pattern.compile("^CREATE\\s+(PRIMARY\\s+)?INDEX\\s+" +
+            "(?:(?!IF\\s|ON\\s)(`[^`]+`|[\\w${}-]+)\\s+)?(?:IF\\s+NOT\\s+EXISTS\\s+)?ON\\s+" +
+            "((?:[\\w${}-]+:)?" + KEYSPACE_PART + "(?:\\s*\\.\\s*" + KEYSPACE_PART + ")*)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern DML_PATTERN = Pattern.compile("^(?:INSERT|UPSERT|UPDATE|DELETE|MERGE)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The <code>WITH</code> object ending a <code>CREATE INDEX</code> request, after any <code>WITH {</code> of its expressions
+     */
+    private static final Pattern WITH_PATTERN = Pattern.compile("\\bWITH\\s*\\{\\s*((?:(?!\\bWITH\\s*\\{).)*)}\\s*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern DEFER_BUILD_PATTERN = Pattern.compile("[\"'`]defer_build[\"'`]\\s*:", Pattern.CASE_INSENSITIVE);
+
     private final CouchbaseRepository<ChangeLog> repository;
 
+    private final CouchbaseRepository<ChangeLogSummary> summaryRepository;
+
+    /**
+     * Maximum number of document upserts kept in flight while importing documents
+     */
+    @Setter
+    private int importConcurrency = DocumentImporter.DEFAULT_CONCURRENCY;
+
+    /**
+     * Skip writing imported documents whose content hash is unchanged since their last import, at the cost of a lookup per document
+     */
+    @Setter
+    private boolean skipUnchangedDocuments;
+
+    /**
+     * Replace checksums recorded with another {@link ChecksumAlgorithm} by the fetched ones, once verified
+     */
+    @Setter
+    private boolean restampChecksums;
+
+    /**
+     * Maintain a {@link ChangeLogSummary} document along with the {@link ChangeLog} documents, and read the state of the change logs from it
+     */
+    @Setter
+    private boolean useSummary;
+
+    /**
+     * Create the indexes of N1QL change logs deferred, then build them with a single request per keyspace once all the requests are executed,
+     * so that the indexer scans each keyspace once
+     */
+    @Setter
+    private boolean batchIndexBuilds;
+
+    /**
+     * With {@link #batchIndexBuilds}, the maximum duration to wait for the indexes to become online, null to not wait
+     */
+    @Setter
+    private Duration indexBuildTimeout;
+
+    /**
+     * Run the N1QL requests following a documents import consistent with the imported documents only (AT_PLUS),
+     * instead of waiting for the whole bucket to be indexed (REQUEST_PLUS)
+     */
+    @Setter
+    private boolean atPlusConsistency;
+
+    /**
+     * With {@link #atPlusConsistency}, the mutations of the documents imported since the last N1QL request modifying documents, if any
+     */
+    private MutationState importedMutations;
+
+    private final Deque<CompletableFuture<ChangeLog>> pendingSaves = new ArrayDeque<>();
+
+    private final List<ChangeLog> unsummarizedSaves = new ArrayList<>();
+
     public ChangeLogDBService(Bucket bucket, Cluster cluster, Map<String, String> customVariables) {
-        this.repository = new CouchbaseRepositoryImpl<>(cluster, bucket, ChangeLog.class, customVariables);
+        this(bucket, cluster, customVariables, new ThroughputGovernor(), new CollectionManifest(bucket));
+    }
+
+    /**
+     * @param governor throughput limits of the migrations, shared with the {@link ChangeLockService}
+     * @param manifest scopes and collections of the bucket, shared with the {@link ChangeLockService}
+     */
+    public ChangeLogDBService(Bucket bucket, Cluster cluster, Map<String, String> customVariables, ThroughputGovernor governor, CollectionManifest manifest) {
+        this.repository = new CouchbaseRepositoryImpl<>(cluster, bucket, ChangeLog.class, customVariables, governor, manifest);
+        this.summaryRepository = new CouchbaseRepositoryImpl<>(cluster, bucket, ChangeLogSummary.class, customVariables, governor, manifest);
     }
 
     public ChangeLogDBService(com.couchbase.client.java.Collection collection, Cluster cluster, Map<String, String> customVariables) {
-        this.repository = new CouchbaseRepositoryImpl<>(cluster, collection, ChangeLog.class, customVariables);
+        this(collection, cluster, customVariables, new ThroughputGovernor(), new CollectionManifest(cluster.bucket(collection.bucketName())));
+    }
+
+    /**
+     * @param governor throughput limits of the migrations, shared with the {@link ChangeLockService}
+     * @param manifest scopes and collections of the bucket of the collection, shared with the {@link ChangeLockService}
+     */
+    public ChangeLogDBService(com.couchbase.client.java.Collection collection, Cluster cluster, Map<String, String> customVariables, ThroughputGovernor governor, CollectionManifest manifest) {
+        this.repository = new CouchbaseRepositoryImpl<>(cluster, collection, ChangeLog.class, customVariables, governor, manifest);
+        this.summaryRepository = new CouchbaseRepositoryImpl<>(cluster, collection, ChangeLogSummary.class, customVariables, governor, manifest);
     }
 
     ChangeLogDBService(CouchbaseRepository<ChangeLog> repository) {
+        this(repository, null);
+    }
+
+    ChangeLogDBService(CouchbaseRepository<ChangeLog> repository, CouchbaseRepository<ChangeLogSummary> summaryRepository) {
         this.repository = repository;
+        this.summaryRepository = summaryRepository;
+    }
+
+    /**
+     * @return the throughput limits applied to all operations of the migrations
+     */
+    public ThroughputGovernor getThroughputGovernor() {
+        return repository.getThroughputGovernor();
+    }
+
+    /**
+     * Log how long the throughput limits stalled the migrations, if any
+     */
+    public void logThroughputStalls() {
+        repository.getThroughputGovernor().logStallTimes();
     }
 
     /**
@@ -58,27 +189,67 @@ public class ChangeLogDBService {
      * @throws CouchmoveException if checksum doesn't match
      */
     public List<ChangeLog> fetchAndCompare(List<ChangeLog> changeLogs) {
+        return fetchAndCompare(changeLogs, (changeLog, algorithm) -> {
+            throw new CouchmoveException("Unable to verify change log '" + changeLog.getVersion() + "' checksum recorded with " + algorithm);
+        });
+    }
+
+    /**
+     * Get corresponding ChangeLogs from Couchbase bucket, see {@link #fetchAndCompare(List)}
+     * <p>
+     * A checksum recorded with another {@link ChecksumAlgorithm} than the fetched one is verified by calculating the checksum
+     * of the script with the recorded algorithm. If {@link #restampChecksums} is enabled, it is then replaced by the fetched one
+     *
+     * @param changeLogs         to load from database
+     * @param checksumCalculator calculates the checksum of a {@link ChangeLog} script with an algorithm
+     * @return database version of changeLogs
+     * @throws CouchmoveException if checksum doesn't match
+     */
+    public List<ChangeLog> fetchAndCompare(List<ChangeLog> changeLogs, BiFunction<ChangeLog, ChecksumAlgorithm, String> checksumCalculator) {
+        return fetchAndCompare(changeLogs, checksumCalculator, false);
+    }
+
+    /**
+     * Get corresponding ChangeLogs from Couchbase bucket, see {@link #fetchAndCompare(List, BiFunction)}
+     *
+     * @param changeLogs         to load from database
+     * @param checksumCalculator calculates the checksum of a {@link ChangeLog} script with an algorithm
+     * @param readOnly           true to never write to the database, the read change logs are then not added to the {@link ChangeLogSummary}
+     * @return database version of changeLogs
+     * @throws CouchmoveException if checksum doesn't match
+     */
+    public List<ChangeLog> fetchAndCompare(List<ChangeLog> changeLogs, BiFunction<ChangeLog, ChecksumAlgorithm, String> checksumCalculator, boolean readOnly) {
         logger.info("Reading from bucket '{}'", repository.getBucketName());
+        List<ChangeLog> dbChangeLogs = useSummary ? findAllFromSummary(changeLogs, !readOnly) : findAll(changeLogs);
         List<ChangeLog> result = new ArrayList<>(changeLogs.size());
-        for (ChangeLog changeLog : changeLogs) {
+        for (int i = 0; i < changeLogs.size(); i++) {
+            ChangeLog changeLog = changeLogs.get(i);
             String version = changeLog.getVersion();
-            ChangeLog dbChangeLog = repository.findOne(PREFIX_ID + version);
+            ChangeLog dbChangeLog = dbChangeLogs.get(i);
             if (dbChangeLog == null) {
                 logger.debug("Change log version '{}' not found", version);
                 result.add(changeLog);
                 continue;
             }
+            ChecksumAlgorithm dbAlgorithm = ChecksumAlgorithm.orDefault(dbChangeLog.getChecksumAlgorithm());
+            boolean sameAlgorithm = dbAlgorithm == ChecksumAlgorithm.orDefault(changeLog.getChecksumAlgorithm());
             if (dbChangeLog.getChecksum() == null) {
                 logger.warn("Change log version '{}' checksum reset", version);
-                dbChangeLog.setChecksum(changeLog.getChecksum());
+                stamp(dbChangeLog, changeLog);
                 dbChangeLog.setCas(null);
-            } else if (!dbChangeLog.getChecksum().equals(changeLog.getChecksum())) {
+            } else if (!dbChangeLog.getChecksum().equals(sameAlgorithm ? changeLog.getChecksum() : checksumCalculator.apply(changeLog, dbAlgorithm))) {
                 if (dbChangeLog.getStatus() != Status.FAILED) {
                     logger.error("Change log version '{}' checksum doesn't match, please verify if the script '{}' content was modified", changeLog.getVersion(), changeLog.getScript());
                     throw new CouchmoveException("ChangeLog checksum doesn't match");
                 }
                 dbChangeLog.setStatus(null);
-                dbChangeLog.setChecksum(changeLog.getChecksum());
+                stamp(dbChangeLog, changeLog);
+                // Documents have changed, the import can not be resumed
+                dbChangeLog.setCheckpoint(null);
+            } else if (!sameAlgorithm && restampChecksums) {
+                logger.info("Change log version '{}' checksum re-stamped from {} to {}", version, dbAlgorithm, ChecksumAlgorithm.orDefault(changeLog.getChecksumAlgorithm()));
+                stamp(dbChangeLog, changeLog);
+                dbChangeLog.setCas(null);
             }
             if (!dbChangeLog.getDescription().equals(changeLog.getDescription())) {
                 logger.warn("Change log version '{}' description updated", changeLog.getDescription());
@@ -93,6 +264,104 @@ public class ChangeLogDBService {
         return Collections.unmodifiableList(result);
     }
 
+    private List<ChangeLog> findAll(List<ChangeLog> changeLogs) {
+        return repository.findAll(changeLogs.stream()
+                .map(changeLog -> PREFIX_ID + changeLog.getVersion())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Get the database version of the {@link ChangeLog}s from the {@link ChangeLogSummary},
+     * reading the documents of the ones that are not up-to-date in the summary, and adding them to it if requested
+     * <p>
+     * A summary entry is only trusted if the {@link ChangeLog} document still has the summarized CAS, checked without reading its content,
+     * so a document modified by hand, for example to reset its checksum, is read again
+     */
+    private List<ChangeLog> findAllFromSummary(List<ChangeLog> changeLogs, boolean updateSummary) {
+        ChangeLogSummary summary = summaryRepository.findOne(SUMMARY_ID);
+        Map<String, ChangeLogSummary.Entry> entries = summary == null ? Collections.emptyMap() : summary.getChangeLogs();
+        List<ChangeLog> result = new ArrayList<>(changeLogs.size());
+        List<Integer> unsummarized = new ArrayList<>();
+        List<Integer> summarized = new ArrayList<>();
+        for (int i = 0; i < changeLogs.size(); i++) {
+            ChangeLog changeLog = changeLogs.get(i);
+            ChangeLogSummary.Entry entry = entries.get(changeLog.getVersion());
+            if (entry != null && entry.isUpToDate(changeLog)) {
+                result.add(entry.toChangeLog(changeLog));
+                summarized.add(i);
+            } else {
+                result.add(null);
+                unsummarized.add(i);
+            }
+        }
+        if (!summarized.isEmpty()) {
+            List<Long> cas = repository.findAllCas(summarized.stream()
+                    .map(i -> PREFIX_ID + changeLogs.get(i).getVersion())
+                    .collect(Collectors.toList()));
+            for (int i = 0; i < summarized.size(); i++) {
+                int index = summarized.get(i);
+                if (!Objects.equals(cas.get(i), result.get(index).getCas())) {
+                    logger.debug("Change log version '{}' was modified since it was summarized", changeLogs.get(index).getVersion());
+                    result.set(index, null);
+                    unsummarized.add(index);
+                }
+            }
+            Collections.sort(unsummarized);
+        }
+        if (unsummarized.isEmpty()) {
+            return result;
+        }
+        logger.debug("Reading {} change logs that are not up-to-date in the summary", unsummarized.size());
+        List<ChangeLog> dbChangeLogs = findAll(unsummarized.stream()
+                .map(changeLogs::get)
+                .collect(Collectors.toList()));
+        List<ChangeLog> completed = new ArrayList<>();
+        for (int i = 0; i < unsummarized.size(); i++) {
+            ChangeLog dbChangeLog = dbChangeLogs.get(i);
+            result.set(unsummarized.get(i), dbChangeLog);
+            if (dbChangeLog != null && isFinal(dbChangeLog)) {
+                completed.add(dbChangeLog);
+            }
+        }
+        if (updateSummary && !completed.isEmpty()) {
+            summarize(completed);
+        }
+        return result;
+    }
+
+    /**
+     * Add the {@link ChangeLog}s to the {@link ChangeLogSummary}, with optimistic locking
+     * <p>
+     * If the summary can not be updated, it is removed so that the {@link ChangeLog} documents are read instead
+     */
+    private void summarize(List<ChangeLog> changeLogs) {
+        for (int attempt = 1; ; attempt++) {
+            ChangeLogSummary summary = summaryRepository.findOne(SUMMARY_ID);
+            if (summary == null) {
+                summary = new ChangeLogSummary();
+            }
+            for (ChangeLog changeLog : changeLogs) {
+                summary.getChangeLogs().put(changeLog.getVersion(), ChangeLogSummary.Entry.of(changeLog));
+            }
+            try {
+                summaryRepository.checkAndSave(SUMMARY_ID, summary);
+                return;
+            } catch (CasMismatchException | DocumentExistsException e) {
+                if (attempt == SUMMARY_MAX_ATTEMPTS) {
+                    logger.warn("Unable to update change log summary after {} attempts, removing it", attempt);
+                    summaryRepository.delete(SUMMARY_ID);
+                    return;
+                }
+                logger.debug("Change log summary modified meanwhile, retrying");
+            }
+        }
+    }
+
+    private static void stamp(ChangeLog dbChangeLog, ChangeLog changeLog) {
+        dbChangeLog.setChecksum(changeLog.getChecksum());
+        dbChangeLog.setChecksumAlgorithm(changeLog.getChecksumAlgorithm());
+    }
+
     /**
      * Saves a {@link ChangeLog} in Couchbase {@link Bucket} using an ID composed by :
      * <p>
@@ -102,7 +371,73 @@ public class ChangeLogDBService {
      * @return {@link ChangeLog} entity with CAS (Check And Swap, for optimistic concurrency) set
      */
     public ChangeLog save(ChangeLog changeLog) {
-        return repository.save(PREFIX_ID + changeLog.getVersion(), changeLog);
+        ChangeLog savedChangeLog = repository.save(PREFIX_ID + changeLog.getVersion(), changeLog);
+        if (useSummary && isFinal(savedChangeLog)) {
+            summarize(Collections.singletonList(savedChangeLog));
+        }
+        return savedChangeLog;
+    }
+
+    /**
+     * @return true if the {@link ChangeLog} is executed or skipped, so it is kept in the {@link ChangeLogSummary}.
+     * Other ones, like import checkpoints, would only be read again from their document
+     */
+    private static boolean isFinal(ChangeLog changeLog) {
+        return changeLog.getStatus() == Status.EXECUTED || changeLog.getStatus() == Status.SKIPPED;
+    }
+
+    /**
+     * Saves a {@link ChangeLog} like {@link #save(ChangeLog)}, without waiting for it to be saved
+     * <p>
+     * Up to {@value SAVE_CONCURRENCY} saves are kept in flight, {@link #flush()} must be called to wait for them
+     *
+     * @param changeLog The ChangeLog to save, not to be modified until it is saved
+     * @throws CouchmoveException if a previous save failed
+     */
+    public void saveAsync(ChangeLog changeLog) {
+        if (pendingSaves.size() >= SAVE_CONCURRENCY) {
+            awaitSave(pendingSaves.poll());
+        }
+        pendingSaves.add(repository.saveAsync(PREFIX_ID + changeLog.getVersion(), changeLog).toFuture());
+    }
+
+    /**
+     * Wait for all the {@link ChangeLog}s saved with {@link #saveAsync(ChangeLog)} to be saved
+     *
+     * @throws CouchmoveException if a save failed, after waiting for the others
+     */
+    public void flush() {
+        RuntimeException error = null;
+        while (!pendingSaves.isEmpty()) {
+            try {
+                awaitSave(pendingSaves.poll());
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (!unsummarizedSaves.isEmpty()) {
+            summarize(unsummarizedSaves);
+            unsummarizedSaves.clear();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void awaitSave(CompletableFuture<ChangeLog> save) {
+        ChangeLog savedChangeLog;
+        try {
+            savedChangeLog = save.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof CouchmoveException ? (CouchmoveException) e.getCause() : new CouchmoveException("Unable to save change log", e.getCause());
+        }
+        if (useSummary && isFinal(savedChangeLog)) {
+            unsummarizedSaves.add(savedChangeLog);
+        }
     }
 
     /**
@@ -122,29 +457,101 @@ public class ChangeLogDBService {
      * @param content containing multiple N1ql queries
      */
     public void executeN1ql(String content) {
-        List<String> requests = extractRequests(content);
-        logger.info("Executing {} n1ql requests", requests.size());
-        requests.forEach(repository::query);
+        try {
+            executeN1ql(new StringReader(content));
+        } catch (IOException e) {
+            // Not thrown by a StringReader
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Save multiple json documents to Couchbase {@link Bucket} identified by the keys of the map
+     * Queries Couchbase {@link Bucket} with multiple N1ql queries, read one at a time with a {@link N1qlScanner}
      *
-     * @param documents a {@link Map} which keys represent a json document to be inserted, and the values the unique ID of the document
+     * @param script containing multiple N1ql queries, closed by the caller
+     * @throws IOException if an I/O error occurs reading the script
      */
-    public void importDocuments(Collection<Document> documents) {
-        logger.info("Importing {} documents", documents.size());
-        for (Document document : documents) {
-            var repo = repository;
-            if (document.getCollection() != null) {
-                if (document.getScope() != null) {
-                    repo = repository.withCollection(document.getScope(), document.getCollection());
-                } else {
-                    repo = repository.withCollection(document.getCollection());
-                }
+    public void executeN1ql(Reader script) throws IOException {
+        logger.info("Executing n1ql requests");
+        N1qlScanner scanner = new N1qlScanner(script);
+        Map<String, List<String>> deferredIndexes = new LinkedHashMap<>();
+        int count = 0;
+        for (N1qlRequest request = scanner.next(); request != null; request = scanner.next()) {
+            String statement = batchIndexBuilds ? deferIndexBuild(request.getStatement(), deferredIndexes) : request.getStatement();
+            QueryHints hints = request.getHints();
+            if (importedMutations != null && hints.getConsistency() == null) {
+                hints = hints.toBuilder().consistentWith(importedMutations).build();
             }
-            repo.save(FilenameUtils.getBaseName(document.getFileName()), document.getContent());
+            repository.query(statement, hints);
+            if (DML_PATTERN.matcher(statement).find()) {
+                // Mutations of the request have no tokens, following requests must see the whole bucket again
+                importedMutations = null;
+            }
+            count++;
         }
+        deferredIndexes.forEach((keyspace, indexNames) -> repository.buildN1qlIndexes(keyspace, indexNames, indexBuildTimeout));
+        logger.info("Executed {} n1ql requests", count);
+    }
+
+    /**
+     * Rewrite a <code>CREATE INDEX</code> request so that the index build is deferred, unless its <code>WITH</code> clause already specifies <code>defer_build</code>
+     *
+     * @param request         the request to rewrite
+     * @param deferredIndexes the names of the deferred indexes by keyspace, to which the index of the request is added
+     * @return the rewritten request, or the request itself if it doesn't create an index to defer
+     */
+    static String deferIndexBuild(String request, Map<String, List<String>> deferredIndexes) {
+        Matcher matcher = CREATE_INDEX_PATTERN.matcher(request);
+        if (!matcher.find()) {
+            return request;
+        }
+        Matcher withMatcher = WITH_PATTERN.matcher(request);
+        boolean withClause = withMatcher.find();
+        if (withClause && DEFER_BUILD_PATTERN.matcher(withMatcher.group(1)).find()) {
+            return request;
+        }
+        String indexName = matcher.group(2) != null ? matcher.group(2) : matcher.group(1) != null ? CouchbaseRepositoryImpl.PRIMARY_INDEX : null;
+        if (indexName == null) {
+            return request;
+        }
+        deferredIndexes.computeIfAbsent(matcher.group(3).replaceAll("\\s", ""), keyspace -> new ArrayList<>()).add(indexName);
+        if (!withClause) {
+            return request + " WITH {\"defer_build\": true}";
+        }
+        int position = withMatcher.start(1);
+        return request.substring(0, position) + "\"defer_build\": true" + (withMatcher.group(1).isEmpty() ? "" : ", ") + request.substring(position);
+    }
+
+    /**
+     * Save multiple json documents to Couchbase {@link Bucket}, keeping {@link #importConcurrency} upserts in flight
+     *
+     * <p>
+     * The import progress is periodically saved as the {@link ChangeLog#checkpoint}, so a failed import is resumed from it
+     *
+     * @param documents json {@link Document}s to insert, identified by their file name, read lazily and always in the same order
+     * @param changeLog the {@link ChangeLog} of the documents
+     */
+    public void importDocuments(Stream<Document> documents, ChangeLog changeLog) {
+        logger.info("Importing documents");
+        long checkpoint = changeLog.getCheckpoint() == null ? 0 : changeLog.getCheckpoint();
+        ImportReport report = new DocumentImporter(repository, importConcurrency, skipUnchangedDocuments).importDocuments(documents, checkpoint, newCheckpoint -> {
+            if (changeLog.getCheckpoint() == null || newCheckpoint > changeLog.getCheckpoint()) {
+                logger.debug("Saving change log '{}' checkpoint : {}", changeLog.getVersion(), newCheckpoint);
+                changeLog.setCheckpoint(newCheckpoint);
+                save(changeLog);
+            }
+        });
+        changeLog.setCheckpoint(null);
+        if (atPlusConsistency && report.getMutationState().iterator().hasNext()) {
+            importedMutations = importedMutations == null ? report.getMutationState() : importedMutations.add(report.getMutationState());
+        }
+    }
+
+    /**
+     * Forget the mutations of the imported documents, so that following N1QL requests see the whole bucket again
+     */
+    public void clearImportedMutations() {
+        importedMutations = null;
     }
 
     /**
@@ -225,11 +632,29 @@ public class ChangeLogDBService {
      * @return multiple requests
      */
     static List<String> extractRequests(String content) {
-        String commentsRemoved = content.replaceAll("((?:--[^\\n]*)|(?s)(?:\\/\\*.*?\\*\\/))", "")
-                .trim();
-
-        return Arrays.stream(commentsRemoved.split(";"))
-                .map(String::trim)
+        return extractHintedRequests(content).stream()
+                .map(N1qlRequest::getStatement)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Extract multiple requests like {@link #extractRequests(String)}, with the {@link QueryHints} of the directive comments preceding them
+     *
+     * @param content content from where the requests are extracted
+     * @return multiple requests, without the blank ones
+     * @throws CouchmoveException if a directive is invalid
+     */
+    static List<N1qlRequest> extractHintedRequests(String content) {
+        List<N1qlRequest> requests = new ArrayList<>();
+        N1qlScanner scanner = new N1qlScanner(new StringReader(content));
+        try {
+            for (N1qlRequest request = scanner.next(); request != null; request = scanner.next()) {
+                requests.add(request);
+            }
+        } catch (IOException e) {
+            // Not thrown by a StringReader
+            throw new UncheckedIOException(e);
+        }
+        return requests;
+    }
 }
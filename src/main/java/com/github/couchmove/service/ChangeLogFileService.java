@@ -2,21 +2,28 @@ package com.github.couchmove.service;
 
 import com.github.couchmove.exception.CouchmoveException;
 import com.github.couchmove.pojo.*;
+import com.github.couchmove.utils.ArchiveDocumentReader;
+import com.github.couchmove.utils.ChecksumCache;
 import com.github.couchmove.utils.FileUtils;
+import com.github.couchmove.utils.JsonDocumentReader;
+import lombok.Setter;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static com.github.couchmove.pojo.Type.Constants.JSON;
@@ -33,10 +40,36 @@ public class ChangeLogFileService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChangeLogFileService.class);
 
-    private static Pattern fileNamePattern = Pattern.compile("V([\\w.]+)__([\\w ]+)\\.?(\\w*)/?$");
+    private static Pattern fileNamePattern = Pattern.compile("V([\\w.]+)__([\\w ]+)\\.?([\\w.]*)/?$");
+
+    private static final String[] CHECKSUM_EXTENSIONS = {DESIGN_DOC.getExtension(), N1QL.getExtension(), Type.FTS.getExtension(), EVENTING.getExtension()};
 
     private final Path changePath;
 
+    /**
+     * Name of the field containing the ID of {@link Type#JSONL} documents, or an expression referencing fields : <code>${type}::${id}</code>
+     */
+    @Setter
+    private String documentKey = JsonDocumentReader.DEFAULT_KEY;
+
+    /**
+     * File caching the checksums of unchanged files between runs, disabled if null
+     */
+    @Setter
+    private Path checksumCache;
+
+    /**
+     * Algorithm of the checksums of the fetched {@link ChangeLog}s
+     */
+    @Setter
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.SHA_256;
+
+    /**
+     * Read the {@link ChangeLog}s from the {@link ChangeLogIndex} of the Change Folder when present and listing the same scripts, instead of hashing them
+     */
+    @Setter
+    private boolean useIndex;
+
     /**
      * @param changePath The resource path of the folder containing {@link ChangeLog}s
      */
@@ -46,28 +79,56 @@ public class ChangeLogFileService {
 
     /**
      * Reads all the {@link ChangeLog}s contained in the Change Folder, ignoring unhandled files
+     * <p>
+     * The checksums of the {@link ChangeLog}s are calculated in parallel, unless they are read from the {@link ChangeLogIndex} of the Change Folder.
+     * The index is only used if it lists the same scripts as the Change Folder, it is otherwise ignored with a warning
      *
      * @return An ordered list of {@link ChangeLog}s by {@link ChangeLog#version}
      * @throws IOException if unable to open changePath
      */
     public List<ChangeLog> fetch() throws IOException {
         logger.info("Reading from migration folder '{}'", changePath);
-        List<ChangeLog> changelogs = StreamSupport.stream(newDirectoryStream(changePath).spliterator(), false)
+        List<Path> paths;
+        try (DirectoryStream<Path> directoryStream = newDirectoryStream(changePath)) {
+            paths = StreamSupport.stream(directoryStream.spliterator(), false)
+                    .filter(path -> fileNamePattern.matcher(path.getFileName().toString()).matches())
+                    .collect(Collectors.toList());
+        }
+        Path indexFile = changePath.resolve(ChangeLogIndex.INDEX_FILE);
+        if (useIndex && Files.isRegularFile(indexFile)) {
+            List<ChangeLog> changelogs = ChangeLogIndex.read(indexFile).stream()
+                    .sorted()
+                    .collect(Collectors.toList());
+            Set<String> scripts = paths.stream()
+                    .map(path -> path.getFileName().toString())
+                    .collect(Collectors.toSet());
+            if (changelogs.size() == scripts.size() && changelogs.stream().map(ChangeLog::getScript).allMatch(scripts::contains)) {
+                logger.info("Fetched {} change logs from migration folder index '{}'", changelogs.size(), indexFile);
+                return Collections.unmodifiableList(changelogs);
+            }
+            logger.warn("Migration folder index '{}' is stale, it doesn't list the same change logs as the folder. Ignoring it, please generate it again", indexFile);
+        }
+        ChecksumCache cache = checksumCache == null ? null : new ChecksumCache(checksumCache);
+        Map<Path, String> checksums = FileUtils.calculateChecksums(paths, checksumAlgorithm, cache, CHECKSUM_EXTENSIONS);
+        if (cache != null) {
+            cache.save();
+        }
+        List<ChangeLog> changelogs = paths.stream()
                 .map(path -> {
                     String fileName = path.getFileName().toString();
                     Matcher matcher = fileNamePattern.matcher(fileName);
-                    if (!matcher.matches()) {
-                        return null;
-                    }
+                    // Always true, paths were filtered on their name
+                    matcher.matches();
                     return ChangeLog.builder()
                             .version(matcher.group(1))
                             .script(fileName)
                             .description(matcher.group(2).replace("_", " "))
                             .type(getChangeLogType(path))
-                            .checksum(FileUtils.calculateChecksum(path, DESIGN_DOC.getExtension(), N1QL.getExtension(), Type.FTS.getExtension(), EVENTING.getExtension()))
+                            .checksum(checksums.get(path))
+                            // Historical algorithm is not recorded
+                            .checksumAlgorithm(checksumAlgorithm == ChecksumAlgorithm.SHA_256 ? null : checksumAlgorithm)
                             .build();
                 })
-                .filter(Objects::nonNull)
                 .peek(changelog -> logger.debug("Fetched one : {}", changelog))
                 .sorted()
                 .collect(Collectors.toList());
@@ -75,6 +136,17 @@ public class ChangeLogFileService {
         return Collections.unmodifiableList(changelogs);
     }
 
+    /**
+     * Calculate the checksum of a {@link ChangeLog} script with another algorithm than the fetched one, to verify a checksum recorded with it
+     *
+     * @param changeLog the {@link ChangeLog} whose script to hash
+     * @param algorithm the hash algorithm
+     * @return the checksum of the script
+     */
+    public String calculateChecksum(ChangeLog changeLog, ChecksumAlgorithm algorithm) {
+        return FileUtils.calculateChecksum(resolve(changeLog.getScript()), algorithm, CHECKSUM_EXTENSIONS);
+    }
+
     /**
      * Read file content from a relative path from the Change Folder
      *
@@ -83,18 +155,36 @@ public class ChangeLogFileService {
      * @throws IOException if an I/O error occurs reading the file
      */
     public String readFile(String path) throws IOException {
-        return new String(IOUtils.toByteArray(resolve(path).toUri()));
+        return new String(FileUtils.readBytes(resolve(path)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open a file from a relative path from the Change Folder, to read its content incrementally
+     *
+     * @param path relative path of the file to read
+     * @return a buffered reader of the UTF-8 content of the file, to be closed after use
+     * @throws IOException if an I/O error occurs opening the file
+     */
+    public Reader openFile(String path) throws IOException {
+        return Files.newBufferedReader(resolve(path), StandardCharsets.UTF_8);
     }
 
     /**
-     * Read json files content from a relative directory from the Change Folder
+     * Lazily read json documents from a relative directory or archive from the Change Folder, or from a {@link Type#JSONL} file
      *
-     * @param path relative path of the directory containing json files to read
-     * @return {@link Map} which keys represents the name (with extension), and values the content of read files
+     * @param path relative path of the directory or archive containing json files, or of the {@link Type#JSONL} file to read
+     * @return {@link Stream} of {@link Document}s, whose content is read on demand, to be closed after use
      * @throws IOException if an I/O error occurs reading the files
      */
-    public Collection<Document> readDocuments(String path) throws IOException {
-        return FileUtils.readFilesInDirectory(resolve(path), JSON);
+    public Stream<Document> readDocuments(String path) throws IOException {
+        Path documentsPath = resolve(path);
+        if (ArchiveDocumentReader.isArchive(documentsPath)) {
+            return ArchiveDocumentReader.read(documentsPath, JSON);
+        }
+        if (getChangeLogType(documentsPath) == Type.JSONL) {
+            return JsonDocumentReader.read(documentsPath, documentKey);
+        }
+        return FileUtils.readFilesInDirectory(documentsPath, JSON);
     }
 
     //<editor-fold desc="Helpers">
@@ -125,7 +215,7 @@ public class ChangeLogFileService {
      */
     @NotNull
     public static Type getChangeLogType(Path path) {
-        if (Files.isDirectory(path)) {
+        if (Files.isDirectory(path) || ArchiveDocumentReader.isArchive(path)) {
             return Type.DOCUMENTS;
         }
         return Type.fromExtension(FilenameUtils.getExtension(path.getFileName().toString()).toLowerCase());
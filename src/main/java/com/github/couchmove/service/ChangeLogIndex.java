@@ -0,0 +1,120 @@
+package com.github.couchmove.service;
+
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.JsonNode;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.ObjectMapper;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.node.ArrayNode;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.ChangeLog;
+import com.github.couchmove.pojo.ChecksumAlgorithm;
+import com.github.couchmove.pojo.Type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of the {@link ChangeLog}s of a Change Folder, with their checksums, generated at build time
+ * <p>
+ * When enabled with {@link ChangeLogFileService#setUseIndex(boolean)} and present in the Change Folder, {@link ChangeLogFileService#fetch()} reads it
+ * instead of hashing the folder, which is slow when the folder is packaged in a jar. The index is ignored if it doesn't list the same scripts as the folder,
+ * but a modified script is not detected, so it must be generated again whenever the Change Folder changes, for example with this Gradle task
+ * in the build of the application containing the Change Folder :
+ * <pre>
+ * task couchmoveIndex(type: JavaExec) {
+ *     classpath = sourceSets.main.runtimeClasspath
+ *     mainClass = 'com.github.couchmove.service.ChangeLogIndex'
+ *     args "$buildDir/resources/main/db/migration"
+ * }
+ * processResources.finalizedBy couchmoveIndex
+ * </pre>
+ */
+public class ChangeLogIndex {
+
+    public static final String INDEX_FILE = "couchmove-index.json";
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private ChangeLogIndex() {
+    }
+
+    /**
+     * Generate the index of a Change Folder
+     *
+     * @param args path of the Change Folder, and optionally the {@link ChecksumAlgorithm} of the checksums
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            throw new IllegalArgumentException("Usage : ChangeLogIndex <change folder> [" + ChecksumAlgorithm.SHA_256 + "|" + ChecksumAlgorithm.MURMUR3_128 + "|" + ChecksumAlgorithm.BLAKE3 + "]");
+        }
+        Path changePath = Paths.get(args[0]);
+        ChangeLogFileService fileService = new ChangeLogFileService(changePath.toString());
+        fileService.setUseIndex(false);
+        if (args.length == 2) {
+            fileService.setChecksumAlgorithm(ChecksumAlgorithm.valueOf(args[1]));
+        }
+        write(changePath.resolve(INDEX_FILE), fileService.fetch());
+    }
+
+    /**
+     * @param indexFile  the index file to write
+     * @param changeLogs the {@link ChangeLog}s of the Change Folder
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(Path indexFile, List<ChangeLog> changeLogs) throws IOException {
+        ObjectNode index = jsonMapper.createObjectNode();
+        index.put("formatVersion", FORMAT_VERSION);
+        ArrayNode entries = index.putArray("changeLogs");
+        for (ChangeLog changeLog : changeLogs) {
+            ObjectNode entry = entries.addObject()
+                    .put("version", changeLog.getVersion())
+                    .put("description", changeLog.getDescription())
+                    .put("type", changeLog.getType().name())
+                    .put("script", changeLog.getScript())
+                    .put("checksum", changeLog.getChecksum());
+            if (changeLog.getChecksumAlgorithm() != null) {
+                entry.put("checksumAlgorithm", changeLog.getChecksumAlgorithm().name());
+            }
+        }
+        try (OutputStream outputStream = Files.newOutputStream(indexFile)) {
+            jsonMapper.writerWithDefaultPrettyPrinter().writeValue(outputStream, index);
+        }
+    }
+
+    /**
+     * @param indexFile the index file to read
+     * @return the {@link ChangeLog}s of the index, in the order they were written
+     * @throws IOException if an I/O error occurs
+     */
+    public static List<ChangeLog> read(Path indexFile) throws IOException {
+        JsonNode index;
+        try (InputStream inputStream = Files.newInputStream(indexFile)) {
+            index = jsonMapper.readTree(inputStream);
+        }
+        if (index.path("formatVersion").asInt() != FORMAT_VERSION) {
+            throw new CouchmoveException("Unsupported change log index format '" + index.path("formatVersion") + "' in '" + indexFile + "', please generate it again");
+        }
+        List<ChangeLog> changeLogs = new ArrayList<>();
+        for (JsonNode entry : index.path("changeLogs")) {
+            JsonNode checksumAlgorithm = entry.path("checksumAlgorithm");
+            changeLogs.add(ChangeLog.builder()
+                    .version(entry.path("version").asText())
+                    .description(entry.path("description").asText())
+                    .type(Type.valueOf(entry.path("type").asText()))
+                    .script(entry.path("script").asText())
+                    .checksum(entry.path("checksum").isNull() ? null : entry.path("checksum").asText())
+                    .checksumAlgorithm(checksumAlgorithm.isMissingNode() ? null : ChecksumAlgorithm.valueOf(checksumAlgorithm.asText()))
+                    .build());
+        }
+        return Collections.unmodifiableList(changeLogs);
+    }
+}
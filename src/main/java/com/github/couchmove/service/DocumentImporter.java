@@ -0,0 +1,241 @@
+package com.github.couchmove.service;
+
+import com.couchbase.client.java.kv.MutationResult;
+import com.couchbase.client.java.kv.MutationState;
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.Document;
+import com.github.couchmove.pojo.ImportReport;
+import com.github.couchmove.repository.CouchbaseRepository;
+import com.google.common.base.Stopwatch;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import static com.github.couchmove.utils.Utils.elapsed;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Imports json {@link Document}s concurrently through the reactive API
+ * <p>
+ * Up to {@link #concurrency} upserts are kept in flight, so they are pipelined by the SDK on the connections of each node
+ * instead of waiting for one round trip per document.
+ * The number of upserts actually in flight adapts below this maximum to the backpressure of the cluster, see {@link AdaptiveConcurrencyLimiter}
+ * <p>
+ * When {@link #skipUnchanged} is enabled, a hash of each document content is stored in an extended attribute of the document,
+ * and documents whose stored hash matches are not written again, costing a small sub-document lookup instead of a full write.
+ * Changed documents cost both the lookup and the write round trips. Lookups are not limited by the {@link AdaptiveConcurrencyLimiter},
+ * which adapts to the writes only
+ * <p>
+ * The mutation tokens of the written documents are collected in the {@link ImportReport#getMutationState()}, so that following queries
+ * can wait for these documents to be indexed only, instead of the whole bucket
+ */
+public class DocumentImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentImporter.class);
+
+    public static final int DEFAULT_CONCURRENCY = 64;
+
+    static final int PROGRESS_INTERVAL = 10_000;
+
+    static final int MAX_LOGGED_FAILURES = 10;
+
+    static final Duration CHECKPOINT_INTERVAL = Duration.ofSeconds(10);
+
+    private final CouchbaseRepository<?> repository;
+
+    private final int concurrency;
+
+    private final boolean skipUnchanged;
+
+    public DocumentImporter(CouchbaseRepository<?> repository, int concurrency) {
+        this(repository, concurrency, false);
+    }
+
+    public DocumentImporter(CouchbaseRepository<?> repository, int concurrency, boolean skipUnchanged) {
+        checkArgument(concurrency > 0, "Import concurrency should be positive : %s", concurrency);
+        this.repository = repository;
+        this.concurrency = concurrency;
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Save all documents, keeping at most {@link #concurrency} upserts in flight
+     * <p>
+     * Documents are pulled lazily from the stream, and their content is read only when their upsert is issued,
+     * so at most {@link #concurrency} payloads are held in memory
+     *
+     * @param documents documents to import
+     * @return the {@link ImportReport} of the import
+     * @throws CouchmoveException if one or more documents could not be imported
+     */
+    public ImportReport importDocuments(Stream<Document> documents) {
+        return importDocuments(documents, 0, checkpoint -> {
+        });
+    }
+
+    /**
+     * Save all documents after a checkpoint, keeping at most {@link #concurrency} upserts in flight
+     * <p>
+     * The checkpoint is the number of leading documents of the stream that were all successfully imported.
+     * As documents complete out of order, it only moves forward once all previous documents are imported.
+     * It is periodically reported to the listener so an interrupted import can be resumed from it, provided the stream order is the same
+     *
+     * @param documents          documents to import, always in the same order
+     * @param checkpoint         number of leading documents already imported by a previous run, to skip
+     * @param checkpointListener notified of the checkpoint every {@link #CHECKPOINT_INTERVAL}, out of the SDK IO threads
+     * @return the {@link ImportReport} of the import
+     * @throws CouchmoveException if one or more documents could not be imported
+     */
+    public ImportReport importDocuments(Stream<Document> documents, long checkpoint, LongConsumer checkpointListener) {
+        if (checkpoint > 0) {
+            logger.info("Resuming import after {} documents", checkpoint);
+        }
+        Stopwatch sw = Stopwatch.createStarted();
+        AtomicLong imported = new AtomicLong();
+        AtomicLong unchanged = new AtomicLong();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Watermark watermark = new Watermark(checkpoint);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(concurrency);
+        MutationState mutationState = new MutationState();
+        Flux.fromStream(documents)
+                .index()
+                // Skipped documents are never read
+                .skip(checkpoint)
+                // Reading documents and resolving repositories may block, keep it off the SDK IO threads
+                .publishOn(Schedulers.boundedElastic(), concurrency)
+                .flatMap(indexed -> {
+                    Document document = indexed.getT2();
+                    // Blocking reads and collection resolution are done here, as limited operations may start on SDK IO threads
+                    return Mono.fromCallable(() -> getRepository(document))
+                            .flatMap(documentRepository -> {
+                                byte[] content = document.getContent();
+                                return save(document, documentRepository, content, limiter, mutationState);
+                            })
+                            .doOnSuccess(written -> {
+                                (written ? imported : unchanged).incrementAndGet();
+                                long count = imported.get() + unchanged.get();
+                                if (count % PROGRESS_INTERVAL == 0) {
+                                    logger.info("Imported {} documents in {}", count, elapsed(sw));
+                                }
+                            })
+                            .thenReturn(indexed.getT1())
+                            .onErrorResume(e -> {
+                                logger.debug("Unable to import document '{}'", document.getPath(), e);
+                                failures.put(document.getPath(), e);
+                                return Mono.empty();
+                            });
+                }, concurrency)
+                .doOnNext(watermark::complete)
+                .sample(CHECKPOINT_INTERVAL)
+                // Checkpoint listeners may block
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(index -> checkpointListener.accept(watermark.get()))
+                .then()
+                .block();
+        logger.debug("Import concurrency limit was {} at the end of the import", limiter.getLimit());
+        ImportReport report = new ImportReport(imported.get(), unchanged.get(), checkpoint, watermark.get(), Collections.unmodifiableMap(failures), sw.elapsed(), mutationState);
+        if (skipUnchanged) {
+            logger.info("Imported {} documents and skipped {} unchanged documents in {} ({} documents/s)",
+                    report.getImported(), report.getUnchanged(), elapsed(sw), format(report.getThroughput()));
+        } else {
+            logger.info("Imported {} documents in {} ({} documents/s)", report.getImported(), elapsed(sw), format(report.getThroughput()));
+        }
+        if (!failures.isEmpty()) {
+            checkpointListener.accept(report.getCheckpoint());
+            failures.entrySet().stream()
+                    .limit(MAX_LOGGED_FAILURES)
+                    .forEach(failure -> logger.error("Unable to import document '{}' : {}", failure.getKey(), failure.getValue().getMessage()));
+            throw new CouchmoveException("Unable to import " + failures.size() + " documents, " + report.getCheckpoint() + " first documents imported");
+        }
+        return report;
+    }
+
+    /**
+     * @return a {@link Mono} emitting true once the document is written, or false if it was unchanged and not written
+     */
+    private Mono<Boolean> save(Document document, CouchbaseRepository<?> documentRepository, byte[] content,
+                               AdaptiveConcurrencyLimiter limiter, MutationState mutationState) {
+        if (!skipUnchanged) {
+            return limiter.run(() -> documentRepository.saveAsync(document.getKey(), content)
+                    .doOnNext(result -> record(result, mutationState))
+                    .thenReturn(true));
+        }
+        String hash = hash(content);
+        return documentRepository.getContentHashAsync(document.getKey())
+                .filter(hash::equals)
+                .map(storedHash -> {
+                    logger.trace("Document '{}' is unchanged", document.getPath());
+                    return false;
+                })
+                .switchIfEmpty(Mono.defer(() -> limiter.run(() -> documentRepository.saveAsync(document.getKey(), content, hash)
+                        .doOnNext(result -> record(result, mutationState))
+                        .thenReturn(true))));
+    }
+
+    private static void record(MutationResult result, MutationState mutationState) {
+        result.mutationToken().ifPresent(token -> {
+            // Upserts complete concurrently on the SDK IO threads
+            synchronized (mutationState) {
+                mutationState.add(token);
+            }
+        });
+    }
+
+    static String hash(byte[] content) {
+        return Hashing.murmur3_128().hashBytes(content).toString();
+    }
+
+    private CouchbaseRepository<?> getRepository(Document document) {
+        if (document.getCollection() == null) {
+            return repository;
+        }
+        if (document.getScope() != null) {
+            return repository.withCollection(document.getScope(), document.getCollection());
+        }
+        return repository.withCollection(document.getCollection());
+    }
+
+    private static String format(double throughput) {
+        return String.format(Locale.ROOT, "%.1f", throughput);
+    }
+
+    /**
+     * Number of leading documents that were all completed, documents completing out of order
+     */
+    static class Watermark {
+
+        private long value;
+
+        /**
+         * Completed documents after the watermark, relatively to it
+         */
+        private BitSet completed = new BitSet();
+
+        Watermark(long value) {
+            this.value = value;
+        }
+
+        synchronized void complete(long index) {
+            completed.set((int) (index - value));
+            int advance = completed.nextClearBit(0);
+            if (advance > 0) {
+                value += advance;
+                completed = completed.get(advance, Math.max(advance, completed.length()));
+            }
+        }
+
+        synchronized long get() {
+            return value;
+        }
+    }
+}
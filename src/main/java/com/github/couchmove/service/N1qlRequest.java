@@ -0,0 +1,15 @@
+package com.github.couchmove.service;
+
+import com.github.couchmove.repository.QueryHints;
+import lombok.Value;
+
+/**
+ * A N1QL request of a change log, with its {@link QueryHints}
+ */
+@Value
+class N1qlRequest {
+
+    String statement;
+
+    QueryHints hints;
+}
@@ -0,0 +1,170 @@
+package com.github.couchmove.service;
+
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.repository.QueryHints;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Incremental lexer splitting a N1QL script into requests separated by ';'
+ * <p>
+ * The script is read from a {@link Reader} as requests are pulled, so only the current request is held in memory. It understands :
+ * <ul>
+ * <li> string literals ('...' and "..."), with backslash escapes and doubled quotes
+ * <li> escaped identifiers (`...`), with doubled backticks
+ * <li> unique line (-- ...) comments, which are removed, except that their {@link QueryHints} directives apply to the following request
+ * <li> multi-line (\/* ... *\/) comments, which are removed
+ * </ul>
+ * So a ';' or a comment marker inside a string literal or an identifier doesn't split the request
+ */
+class N1qlScanner {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private final StringBuilder statement = new StringBuilder();
+
+    private final StringBuilder comment = new StringBuilder();
+
+    /**
+     * @param reader the N1QL script to read, closed by the caller
+     */
+    N1qlScanner(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next non blank request with the {@link QueryHints} of its directives, or null at the end of the script
+     * @throws IOException        if an I/O error occurs reading the script
+     * @throws CouchmoveException if a string literal, an identifier or a comment is not terminated, or if a directive is invalid
+     */
+    N1qlRequest next() throws IOException {
+        QueryHints hints = QueryHints.DEFAULT;
+        statement.setLength(0);
+        int c;
+        while ((c = read()) != EOF) {
+            switch (c) {
+                case ';':
+                    String request = statement.toString().trim();
+                    if (!request.isEmpty()) {
+                        return new N1qlRequest(request, hints);
+                    }
+                    statement.setLength(0);
+                    hints = QueryHints.DEFAULT;
+                    break;
+                case '\'':
+                case '"':
+                case '`':
+                    readQuoted((char) c);
+                    break;
+                case '-':
+                    if (peek() == '-') {
+                        read();
+                        String lineComment = readLineComment();
+                        if (QueryHints.isDirective(lineComment)) {
+                            hints = hints.with(lineComment);
+                        }
+                    } else {
+                        statement.append('-');
+                    }
+                    break;
+                case '/':
+                    if (peek() == '*') {
+                        read();
+                        skipBlockComment();
+                        // Keeps the tokens around the comment apart
+                        statement.append(' ');
+                    } else {
+                        statement.append('/');
+                    }
+                    break;
+                default:
+                    statement.append((char) c);
+            }
+        }
+        String request = statement.toString().trim();
+        return request.isEmpty() ? null : new N1qlRequest(request, hints);
+    }
+
+    private void readQuoted(char quote) throws IOException {
+        statement.append(quote);
+        while (true) {
+            int c = read();
+            if (c == EOF) {
+                throw new CouchmoveException("Unterminated " + (quote == '`' ? "identifier" : "string literal") + " in N1QL request '" + statement + "'");
+            }
+            statement.append((char) c);
+            if (c == '\\' && quote != '`') {
+                int escaped = read();
+                if (escaped != EOF) {
+                    statement.append((char) escaped);
+                }
+            } else if (c == quote) {
+                if (peek() != quote) {
+                    return;
+                }
+                // Doubled quote
+                statement.append((char) read());
+            }
+        }
+    }
+
+    /**
+     * @return the comment, without its end of line which is kept in the request
+     */
+    private String readLineComment() throws IOException {
+        comment.setLength(0);
+        comment.append("--");
+        int c;
+        while ((c = peek()) != EOF && c != '\n') {
+            comment.append((char) read());
+        }
+        return comment.toString();
+    }
+
+    private void skipBlockComment() throws IOException {
+        int previous = EOF;
+        int c;
+        while ((c = read()) != EOF) {
+            if (previous == '*' && c == '/') {
+                return;
+            }
+            previous = c;
+        }
+        throw new CouchmoveException("Unterminated comment in N1QL request '" + statement.toString().trim() + "'");
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = reader.read(buffer, 0, BUFFER_SIZE);
+        } while (count == 0);
+        position = 0;
+        limit = Math.max(count, 0);
+        return count > 0;
+    }
+}
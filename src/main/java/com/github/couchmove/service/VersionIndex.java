@@ -0,0 +1,83 @@
+package com.github.couchmove.service;
+
+import com.github.couchmove.pojo.ChangeLog;
+import com.github.couchmove.pojo.Status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.github.couchmove.pojo.Status.EXECUTED;
+import static com.github.couchmove.pojo.Status.SKIPPED;
+
+/**
+ * {@link ChangeLog}s sorted by version, answering which ones are pending after the last executed one
+ */
+public class VersionIndex {
+
+    private final List<ChangeLog> changeLogs;
+
+    private final ChangeLog lastExecuted;
+
+    /**
+     * First position of the {@link ChangeLog}s with a greater version than {@link #lastExecuted}
+     */
+    private final int pendingStart;
+
+    /**
+     * @param changeLogs the {@link ChangeLog}s to index
+     */
+    public VersionIndex(Collection<ChangeLog> changeLogs) {
+        List<ChangeLog> sorted = new ArrayList<>(changeLogs);
+        Collections.sort(sorted);
+        this.changeLogs = Collections.unmodifiableList(sorted);
+        ChangeLog last = null;
+        for (ChangeLog changeLog : sorted) {
+            if (changeLog.getStatus() == EXECUTED && (last == null || changeLog.compareTo(last) > 0)) {
+                last = changeLog;
+            }
+        }
+        this.lastExecuted = last;
+        this.pendingStart = last == null ? 0 : upperBound(sorted, last);
+    }
+
+    /**
+     * @return all the {@link ChangeLog}s, sorted by version
+     */
+    public List<ChangeLog> getChangeLogs() {
+        return changeLogs;
+    }
+
+    /**
+     * @return the {@link Status#EXECUTED} {@link ChangeLog} with the greatest version, if any
+     */
+    public Optional<ChangeLog> getLastExecuted() {
+        return Optional.ofNullable(lastExecuted);
+    }
+
+    /**
+     * @return the {@link ChangeLog}s with a greater version than the last executed one, that are neither executed nor skipped, sorted by version
+     */
+    public List<ChangeLog> getPending() {
+        return changeLogs.subList(pendingStart, changeLogs.size()).stream()
+                .filter(changeLog -> changeLog.getStatus() != EXECUTED && changeLog.getStatus() != SKIPPED)
+                .collect(Collectors.toList());
+    }
+
+    private static int upperBound(List<ChangeLog> sorted, ChangeLog changeLog) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted.get(middle).compareTo(changeLog) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
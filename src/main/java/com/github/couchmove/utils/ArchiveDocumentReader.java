@@ -0,0 +1,148 @@
+package com.github.couchmove.utils;
+
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.Document;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams json {@link Document}s from a <code>.zip</code>, <code>.tar.gz</code> or <code>.tgz</code> archive, without extracting it
+ * <p>
+ * Entries follow the same layout as a documents folder : <code>[[scope/]collection/]document.json</code>.
+ * Archives are read sequentially, so the content of each entry is read when the entry is reached
+ * <p>
+ * An entry whose data can't be read, like an encrypted zip entry, fails the import, so no document is silently missing
+ */
+@SuppressWarnings("rawtypes")
+public class ArchiveDocumentReader implements Iterator<Document>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveDocumentReader.class);
+
+    private static final String ZIP = "zip";
+
+    private static final List<String> TAR_GZ = Arrays.asList("tar.gz", "tgz");
+
+    private final ArchiveInputStream archive;
+
+    private final String[] extensions;
+
+    private Document next;
+
+    ArchiveDocumentReader(ArchiveInputStream archive, String... extensions) {
+        this.archive = archive;
+        this.extensions = extensions;
+    }
+
+    /**
+     * @param path file to verify
+     * @return true if the file is a supported documents archive
+     */
+    public static boolean isArchive(Path path) {
+        String fileName = path.getFileName().toString().toLowerCase();
+        return fileName.endsWith("." + ZIP) || TAR_GZ.stream().anyMatch(extension -> fileName.endsWith("." + extension));
+    }
+
+    /**
+     * Lazily read documents from an archive
+     *
+     * @param path       the archive to read
+     * @param extensions The extensions of the entries to read
+     * @return {@link Stream} of {@link Document}s, to be closed after use
+     */
+    public static Stream<Document> read(Path path, String... extensions) {
+        ArchiveDocumentReader reader;
+        try {
+            reader = new ArchiveDocumentReader(open(path), extensions);
+        } catch (IOException e) {
+            throw new CouchmoveException("Unable to read archive '" + path + "'", e);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(reader::close);
+    }
+
+    private static ArchiveInputStream open(Path path) throws IOException {
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(path));
+        if (path.getFileName().toString().toLowerCase().endsWith("." + ZIP)) {
+            // Stored entries followed by a data descriptor are written by some streaming zip tools
+            return new ZipArchiveInputStream(inputStream, "UTF8", true, true);
+        }
+        return new TarArchiveInputStream(new GzipCompressorInputStream(inputStream));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = readNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Document document = next;
+        next = null;
+        return document;
+    }
+
+    private Document readNext() {
+        try {
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null) {
+                if (entry.isDirectory() || !hasExtension(entry.getName())) {
+                    continue;
+                }
+                String[] names = normalize(entry.getName()).split("/");
+                if (names.length > 3) {
+                    logger.warn("Ignoring archive entry '{}', documents should be at most in a scope/collection/ directory", entry.getName());
+                    continue;
+                }
+                if (!archive.canReadEntryData(entry)) {
+                    throw new CouchmoveException("Unable to read archive entry '" + entry.getName() + "', it may be encrypted or use an unsupported compression method");
+                }
+                byte[] content = IOUtils.toByteArray(archive);
+                String fileName = names[names.length - 1];
+                String collection = names.length > 1 ? names[names.length - 2] : null;
+                String scope = names.length > 2 ? names[0] : null;
+                return new Document(scope, collection, fileName, () -> content);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new CouchmoveException("Unable to read archive entry", e);
+        }
+    }
+
+    private boolean hasExtension(String name) {
+        String extension = FilenameUtils.getExtension(name);
+        return Arrays.stream(extensions).anyMatch(extension::equalsIgnoreCase);
+    }
+
+    private static String normalize(String name) {
+        String result = name;
+        while (result.startsWith("./") || result.startsWith("/")) {
+            result = result.substring(result.indexOf('/') + 1);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(archive);
+    }
+}
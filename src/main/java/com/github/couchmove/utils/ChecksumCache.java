@@ -0,0 +1,111 @@
+package com.github.couchmove.utils;
+
+import com.github.couchmove.exception.CouchmoveException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * On-disk cache of file checksums, so unchanged files are not hashed again on each run
+ * <p>
+ * Checksums are identified by their algorithm and the absolute path of the file, and are valid as long as its size, modification time
+ * and file key (the inode on most file systems) are unchanged. Any difference triggers a new hash.
+ * Only files of the default file system are cached, and only the files looked up during a run are kept when the cache is saved
+ */
+public class ChecksumCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumCache.class);
+
+    private static final char SEPARATOR = '|';
+
+    private final Path cacheFile;
+
+    private final Properties stored = new Properties();
+
+    private final Map<String, String> used = new ConcurrentHashMap<>();
+
+    private volatile boolean modified;
+
+    /**
+     * @param cacheFile file of the cache, created on {@link #save()} if it doesn't exist
+     */
+    public ChecksumCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        if (Files.isRegularFile(cacheFile)) {
+            try (InputStream inputStream = Files.newInputStream(cacheFile)) {
+                stored.load(inputStream);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn("Ignoring unreadable checksum cache '{}' : {}", cacheFile, e.getMessage());
+                stored.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the checksum of a file from the cache, or calculate and cache it if the file changed since it was cached
+     *
+     * @param path      the file
+     * @param algorithm name of the checksum algorithm, files being cached per algorithm
+     * @param checksum  calculates the checksum of the file
+     * @return the checksum of the file
+     */
+    public String get(Path path, String algorithm, Supplier<String> checksum) {
+        if (path.getFileSystem() != FileSystems.getDefault()) {
+            return checksum.get();
+        }
+        String key = algorithm + SEPARATOR + path.toAbsolutePath().normalize();
+        String stamp;
+        try {
+            stamp = stamp(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (IOException e) {
+            throw new CouchmoveException("Unable to read attributes of file '" + path + "'", e);
+        }
+        String entry = stored.getProperty(key);
+        if (entry != null && entry.startsWith(stamp + SEPARATOR)) {
+            used.put(key, entry);
+            return entry.substring(stamp.length() + 1);
+        }
+        logger.trace("Checksum of '{}' is not cached or outdated", path);
+        String result = checksum.get();
+        used.put(key, stamp + SEPARATOR + result);
+        modified = true;
+        return result;
+    }
+
+    /**
+     * Save the cache, keeping only the files looked up since it was loaded
+     */
+    public void save() {
+        if (!modified && used.size() == stored.size()) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.putAll(used);
+        try {
+            if (cacheFile.getParent() != null) {
+                Files.createDirectories(cacheFile.getParent());
+            }
+            Path temp = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(temp)) {
+                properties.store(outputStream, "Couchmove checksum cache");
+            }
+            // Concurrent runs never see a partially written cache
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to save checksum cache '{}' : {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private static String stamp(BasicFileAttributes attributes) {
+        return String.valueOf(attributes.size()) + SEPARATOR + attributes.lastModifiedTime() + SEPARATOR + attributes.fileKey();
+    }
+}
@@ -1,9 +1,9 @@
 package com.github.couchmove.utils;
 
 import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.ChecksumAlgorithm;
 import com.github.couchmove.pojo.Document;
 import lombok.SneakyThrows;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
@@ -14,16 +14,26 @@ import java.net.*;
 import java.nio.file.FileSystem;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 import java.util.stream.*;
 
-import static org.apache.commons.io.IOUtils.toByteArray;
-
 /**
  * @author ctayeb
  * Created on 02/06/2017
  */
 public class FileUtils {
 
+    static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Pool hashing files in parallel, nested parallel streams of its tasks being run by the pool itself
+     */
+    private static final ForkJoinPool CHECKSUM_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadLocal<byte[]> CHECKSUM_BUFFER = ThreadLocal.withInitial(() -> new byte[CHECKSUM_BUFFER_SIZE]);
+
     /**
      * Returns Path of a resource in classpath no matter whether it is in a jar or in absolute or relative folder
      *
@@ -66,56 +76,135 @@ public class FileUtils {
     }
 
     /**
-     * If the file is a Directory, calculate the checksum of all files in this directory (one level)
-     * Else, calculate the checksum of the file matching extensions
+     * If the file is a Directory, calculate the {@link ChecksumAlgorithm#SHA_256} checksum of all files in this directory (one level)
+     * Else, calculate the {@link ChecksumAlgorithm#SHA_256} checksum of the file matching extensions
+     * <p>
+     * Files of a directory are hashed in parallel
      *
      * @param filePath   file or folder
      * @param extensions of files to calculate checksum of
      * @return checksum
      */
     public static String calculateChecksum(@NotNull Path filePath, String... extensions) {
+        return calculateChecksum(filePath, ChecksumAlgorithm.SHA_256, extensions);
+    }
+
+    /**
+     * Calculate the checksum of a file or folder with an algorithm, see {@link #calculateChecksum(Path, String...)}
+     * <p>
+     * The checksum of a folder is the hash of the concatenated hexadecimal hashes of its files, sorted by file name
+     *
+     * @param filePath   file or folder
+     * @param algorithm  the hash algorithm
+     * @param extensions of files to calculate checksum of
+     * @return checksum
+     */
+    public static String calculateChecksum(@NotNull Path filePath, ChecksumAlgorithm algorithm, String... extensions) {
+        return CHECKSUM_POOL.invoke(ForkJoinTask.adapt(() -> checksum(filePath, algorithm, null, extensions)));
+    }
+
+    /**
+     * Calculate the checksums of multiple files or folders in parallel, see {@link #calculateChecksum(Path, String...)}
+     *
+     * @param paths      files or folders
+     * @param extensions of files to calculate checksum of
+     * @return checksum of each path, in the order of the paths
+     */
+    public static Map<Path, String> calculateChecksums(@NotNull List<Path> paths, String... extensions) {
+        return calculateChecksums(paths, ChecksumAlgorithm.SHA_256, null, extensions);
+    }
+
+    /**
+     * Calculate the checksums of multiple files or folders in parallel, see {@link #calculateChecksum(Path, String...)}
+     *
+     * @param paths      files or folders
+     * @param algorithm  the hash algorithm
+     * @param cache      cache of the checksums of unchanged files, or null to hash all files
+     * @param extensions of files to calculate checksum of
+     * @return checksum of each path, in the order of the paths
+     */
+    public static Map<Path, String> calculateChecksums(@NotNull List<Path> paths, ChecksumAlgorithm algorithm, @Nullable ChecksumCache cache, String... extensions) {
+        List<String> checksums = CHECKSUM_POOL.invoke(ForkJoinTask.adapt(() -> paths.parallelStream()
+                .map(path -> checksum(path, algorithm, cache, extensions))
+                .collect(Collectors.toList())));
+        // Checksum of an empty folder is null
+        Map<Path, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            result.put(paths.get(i), checksums.get(i));
+        }
+        return result;
+    }
+
+    private static String checksum(Path filePath, ChecksumAlgorithm algorithm, @Nullable ChecksumCache cache, String... extensions) {
         if (filePath == null || !Files.exists(filePath)) {
             throw new CouchmoveException("File is null or doesn't exists");
         }
         if (Files.isDirectory(filePath)) {
-            return directoryStream(filePath, extensions)
-                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
-                    .map(FileUtils::calculateChecksum)
-                    .reduce(String::concat)
-                    .map(DigestUtils::sha256Hex)
-                    .orElse(null);
+            List<Path> files;
+            // Checksums already stored depend on the file system order of the files with the same name
+            try (Stream<Path> stream = directoryStream(filePath, false, extensions)) {
+                files = stream.collect(Collectors.toList());
+            }
+            if (files.isEmpty()) {
+                return null;
+            }
+            // Stable sort, keeping the order of files with the same name in different sub-directories
+            files.sort(Comparator.comparing(path -> path.getFileName().toString()));
+            String concatenatedChecksums = files.parallelStream()
+                    .map(file -> fileChecksum(file, algorithm, cache))
+                    .collect(Collectors.joining());
+            return algorithm.hashHex(concatenatedChecksums);
         }
-        try {
-            return DigestUtils.sha256Hex(toByteArray(filePath.toUri()));
+        return fileChecksum(filePath, algorithm, cache);
+    }
+
+    private static String fileChecksum(Path filePath, ChecksumAlgorithm algorithm, @Nullable ChecksumCache cache) {
+        return cache == null ? fileChecksum(filePath, algorithm) : cache.get(filePath, algorithm.name(), () -> fileChecksum(filePath, algorithm));
+    }
+
+    /**
+     * Stream the file through a digest with a reusable buffer of {@value CHECKSUM_BUFFER_SIZE} bytes per thread
+     */
+    private static String fileChecksum(Path filePath, ChecksumAlgorithm algorithm) {
+        ChecksumAlgorithm.Digest digest = algorithm.newDigest();
+        byte[] buffer = CHECKSUM_BUFFER.get();
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.hex();
         } catch (IOException e) {
             throw new CouchmoveException("Unable to calculate file checksum '" + filePath.getFileName().toString() + "'");
         }
     }
 
     /**
-     * Read files content from a (@link File}
+     * Lazily list documents from a directory, the content of each document being read only when requested
+     * <p>
+     * Documents are always listed in the same order, sorted by name in each directory.
+     * The returned {@link Stream} must be closed to release the underlying directory handles
      *
      * @param directoryPath The directory containing files to read
      * @param extensions    The extensions of the files to read
-     * @return {@link Map} which keys represents the name (with extension), and values the content of read files
+     * @return {@link Stream} of {@link Document}s identified by their path relative to the directory
      */
-    public static Collection<Document> readFilesInDirectory(Path directoryPath, String... extensions) {
+    public static Stream<Document> readFilesInDirectory(Path directoryPath, String... extensions) {
         if (directoryPath == null || !Files.exists(directoryPath)) {
             throw new IllegalArgumentException("File is null or doesn't exists");
         }
         if (!Files.isDirectory(directoryPath)) {
             throw new IllegalArgumentException("'" + directoryPath + "' is not a directory");
         }
-        return directoryStream(directoryPath, extensions)
+        return directoryStream(directoryPath, true, extensions)
                 .map(path -> getDocument(directoryPath, path))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+                .filter(Objects::nonNull);
     }
 
     @Nullable
     private static Document getDocument(Path directoryPath, Path path) {
         String fileName = path.getFileName().toString();
-        String content = readContent(path);
+        Supplier<byte[]> content = () -> readBytes(path);
         Path relativePath = directoryPath.relativize(path);
         switch (relativePath.getNameCount()) {
             case 1:
@@ -132,23 +221,39 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Read all the bytes of a file, without any charset decoding
+     *
+     * @param path the file to read
+     * @return the content of the file
+     */
     @NotNull
     @SneakyThrows
-    private static String readContent(Path path) {
-        return new String(IOUtils.toByteArray(path.toUri()));
+    public static byte[] readBytes(Path path) {
+        return Files.readAllBytes(path);
     }
 
     /**
      * Get a path Stream to iterate over all regular files matching extensions in the directory
+     * <p>
+     * Sub-directories are opened lazily, and closed once iterated. The returned Stream must be closed
      *
      * @param directoryPath the path to the directory
+     * @param sorted        true to sort the entries of each directory by name, so the iteration order is always the same,
+     *                      false to keep the file system order
      * @param extensions    The extensions of the files to iterate over
      * @return a new Stream object
      */
-    private static Stream<Path> directoryStream(@NotNull Path directoryPath, String... extensions) {
+    private static Stream<Path> directoryStream(@NotNull Path directoryPath, boolean sorted, String... extensions) {
         try {
-            return StreamSupport.stream(Files.newDirectoryStream(directoryPath).spliterator(), false)
-                    .flatMap(path -> Files.isDirectory(path) ? directoryStream(path, extensions) : Stream.of(path))
+            DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directoryPath);
+            Stream<Path> entries = StreamSupport.stream(directoryStream.spliterator(), false)
+                    .onClose(() -> IOUtils.closeQuietly(directoryStream));
+            if (sorted) {
+                entries = entries.sorted(Comparator.comparing(path -> path.getFileName().toString()));
+            }
+            return entries
+                    .flatMap(path -> Files.isDirectory(path) ? directoryStream(path, sorted, extensions) : Stream.of(path))
                     .filter(Files::isRegularFile)
                     .filter(path -> Arrays.stream(extensions)
                             .anyMatch(extension -> FilenameUtils
@@ -0,0 +1,215 @@
+package com.github.couchmove.utils;
+
+import com.couchbase.client.core.deps.com.fasterxml.jackson.core.JsonParser;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.core.JsonToken;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.DeserializationFeature;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.JsonNode;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.ObjectMapper;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.couchbase.client.core.deps.com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.Document;
+import org.apache.commons.lang.text.StrLookup;
+import org.apache.commons.lang.text.StrSubstitutor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.lang.String.format;
+
+/**
+ * Streams json {@link Document}s from a single file, using Jackson streaming parser so only the current document is held in memory
+ * <p>
+ * The file either contains one json object per line (JSON Lines), or a top-level json array of objects.
+ * <ul>
+ *     <li> The document ID is read from a field, or built from an expression referencing fields : <code>${type}::${id}</code>
+ *     <li> The target scope and collection can be set per document with the {@value SCOPE_FIELD} and {@value COLLECTION_FIELD} fields,
+ *     which are removed from the saved content
+ * </ul>
+ * Documents are saved with their bytes as they are in the file. Only the documents with a {@value SCOPE_FIELD} or {@value COLLECTION_FIELD} field
+ * are serialized again without it, keeping the exact value of their decimal numbers
+ */
+public class JsonDocumentReader implements Iterator<Document>, Closeable {
+
+    public static final String DEFAULT_KEY = "id";
+
+    public static final String SCOPE_FIELD = "_scope";
+
+    public static final String COLLECTION_FIELD = "_collection";
+
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .setNodeFactory(JsonNodeFactory.withExactBigDecimals(true));
+
+    private final RecordingInputStream input;
+
+    private final JsonParser parser;
+
+    private final String keyExpression;
+
+    private final boolean array;
+
+    private JsonToken next;
+
+    private long index;
+
+    JsonDocumentReader(InputStream inputStream, String keyExpression) throws IOException {
+        this.input = new RecordingInputStream(inputStream);
+        this.parser = mapper.getFactory().createParser(input);
+        this.keyExpression = keyExpression;
+        this.next = parser.nextToken();
+        this.array = next == JsonToken.START_ARRAY;
+        if (array) {
+            next = parser.nextToken();
+        }
+    }
+
+    /**
+     * Lazily read documents from a JSON Lines or json array file
+     *
+     * @param path          the file to read
+     * @param keyExpression name of the field containing the document ID, or an expression referencing fields : <code>${type}::${id}</code>
+     * @return {@link Stream} of {@link Document}s, to be closed after use
+     */
+    public static Stream<Document> read(Path path, String keyExpression) {
+        JsonDocumentReader reader;
+        try {
+            reader = new JsonDocumentReader(Files.newInputStream(path), keyExpression);
+        } catch (IOException e) {
+            throw new CouchmoveException("Unable to read documents of '" + path + "'", e);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(reader::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null && !(array && next == JsonToken.END_ARRAY);
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (next != JsonToken.START_OBJECT) {
+            throw new CouchmoveException(format("Expected a json object at document #%d, but found '%s'", index, next));
+        }
+        try {
+            long start = parser.getTokenLocation().getByteOffset();
+            input.discardBefore(start);
+            ObjectNode node = mapper.readTree(parser);
+            long end = parser.getCurrentLocation().getByteOffset();
+            next = parser.nextToken();
+            String path = "#" + index++;
+            boolean located = node.has(SCOPE_FIELD) || node.has(COLLECTION_FIELD);
+            String scope = removeText(node, SCOPE_FIELD);
+            String collection = removeText(node, COLLECTION_FIELD);
+            // Byte offsets are unknown when the file is not UTF-8 encoded
+            byte[] content = located || start < 0 || end < 0 ? mapper.writeValueAsBytes(node) : input.copy(start, end);
+            return Document.withKey(scope, collection, getKey(node, path), path, content);
+        } catch (IOException e) {
+            throw new CouchmoveException(format("Unable to read document #%d", index), e);
+        }
+    }
+
+    private String getKey(ObjectNode node, String path) {
+        if (!keyExpression.contains("${")) {
+            JsonNode key = node.get(keyExpression);
+            if (key == null || !key.isValueNode() || key.isNull()) {
+                throw new CouchmoveException(format("Document %s has no '%s' field", path, keyExpression));
+            }
+            return key.asText();
+        }
+        return new StrSubstitutor(new StrLookup() {
+            @Override
+            public String lookup(String field) {
+                JsonNode value = node.get(field);
+                if (value == null || !value.isValueNode() || value.isNull()) {
+                    throw new CouchmoveException(format("Document %s has no '%s' field required by key '%s'", path, field, keyExpression));
+                }
+                return value.asText();
+            }
+        }).replace(keyExpression);
+    }
+
+    private static String removeText(ObjectNode node, String field) {
+        JsonNode value = node.remove(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    /**
+     * Keeps the bytes read from the file since the beginning of the current document, to save them as they are
+     */
+    static class RecordingInputStream extends FilterInputStream {
+
+        private byte[] recorded = new byte[8192];
+
+        private int length;
+
+        /**
+         * Offset in the file of the first recorded byte
+         */
+        private long offset;
+
+        RecordingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                record(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                record(b, off, count);
+            }
+            return count;
+        }
+
+        private void record(byte[] b, int off, int len) {
+            if (length + len > recorded.length) {
+                recorded = Arrays.copyOf(recorded, Math.max(recorded.length * 2, length + len));
+            }
+            System.arraycopy(b, off, recorded, length, len);
+            length += len;
+        }
+
+        /**
+         * Forget the bytes before an offset of the file
+         */
+        void discardBefore(long position) {
+            int discarded = (int) Math.min(Math.max(position - offset, 0), length);
+            System.arraycopy(recorded, discarded, recorded, 0, length - discarded);
+            length -= discarded;
+            offset += discarded;
+        }
+
+        /**
+         * @return the recorded bytes between two offsets of the file
+         */
+        byte[] copy(long start, long end) {
+            return Arrays.copyOfRange(recorded, (int) (start - offset), (int) (end - offset));
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.couchmove.utils;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Token bucket limiting a rate of permits per second, with a burst of one second of permits
+ * <p>
+ * A request larger than the available tokens is granted right away by going into debt, and the next requests wait until it is paid back,
+ * so requests larger than the bucket capacity, like big documents against a bytes limit, are never starved
+ */
+public class TokenBucket {
+
+    private final String name;
+
+    private final double permitsPerSecond;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long lastRefill;
+
+    private long stalledNanos;
+
+    /**
+     * @param name             name of the limited resource, for reporting
+     * @param permitsPerSecond maximum rate of permits
+     */
+    public TokenBucket(String name, double permitsPerSecond) {
+        checkArgument(permitsPerSecond > 0, "Rate of %s should be positive : %s", name, permitsPerSecond);
+        this.name = name;
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take permits, blocking the current thread until they are available
+     *
+     * @param permits number of permits to take
+     */
+    public void acquire(long permits) {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            Uninterruptibles.sleepUninterruptibly(waitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Take permits without blocking
+     *
+     * @param permits number of permits to take
+     * @return a {@link Mono} completing once the permits are available
+     */
+    public Mono<Void> acquireAsync(long permits) {
+        return Mono.defer(() -> {
+            long waitNanos = reserve(permits);
+            return waitNanos > 0 ? Mono.delay(Duration.ofNanos(waitNanos)).then() : Mono.empty();
+        });
+    }
+
+    /**
+     * Take permits, possibly in advance
+     *
+     * @param permits number of permits to take
+     * @return nanoseconds to wait before the permits are available
+     */
+    synchronized long reserve(long permits) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+        // Wait for the debt of previous requests to be paid back
+        long waitNanos = tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        tokens -= permits;
+        stalledNanos += waitNanos;
+        return waitNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the time callers were stalled waiting for permits, cumulated over concurrent callers
+     */
+    public synchronized Duration getStallTime() {
+        return Duration.ofNanos(stalledNanos);
+    }
+}
@@ -417,21 +417,17 @@ public class CouchmoveIT extends BaseIT {
         // And a Couchmove instance configured with this collection
         var couchmove = new Couchmove(collection, getCluster(), DB_MIGRATION + "collections");
 
-        // Couchmove should create scope and collection
-        assertThat(
-                getBucket().collections().getAllScopes().stream()
-                        .filter(scopeSpec -> scopeSpec.name().equals(CHANGELOG_SCOPE))
-                        .map(ScopeSpec::collections)
-                        .flatMap(java.util.Collection::stream)
-                        .map(CollectionSpec::name)
-                        .filter(CHANGELOG_COLLECTION::equals)
-                        .findFirst())
-                .isPresent();
+        // When we list the pending change logs, Then all of them should be pending, without creating scope and collection
+        assertThat(couchmove.pendingChangeLogs()).extracting(ChangeLog::getVersion).containsExactly("0", "0.1");
+        assertThat(isChangeLogCollectionPresent()).isFalse();
 
         // When we launch migration
         couchmove.migrate();
 
-        // Then all changeLogs should be inserted in the same collection
+        // Then Couchmove should create scope and collection
+        assertThat(isChangeLogCollectionPresent()).isTrue();
+
+        // And all changeLogs should be inserted in the same collection
         var collectionChangeLogRepository = changeLogRepository.withCollection(CHANGELOG_SCOPE, CHANGELOG_COLLECTION);
         List<ChangeLog> changeLogs = Stream.of("0", "0.1")
                 .map(version -> PREFIX_ID + version)
@@ -446,6 +442,15 @@ public class CouchmoveIT extends BaseIT {
         assertThat(userCollectionRepository.findOne("toto")).isEqualTo(new User("user", "toto", "10/01/1991"));
     }
 
+    private static boolean isChangeLogCollectionPresent() {
+        return getBucket().collections().getAllScopes().stream()
+                .filter(scopeSpec -> scopeSpec.name().equals(CHANGELOG_SCOPE))
+                .map(ScopeSpec::collections)
+                .flatMap(java.util.Collection::stream)
+                .map(CollectionSpec::name)
+                .anyMatch(CHANGELOG_COLLECTION::equals);
+    }
+
     private static void assertLike(ChangeLog changeLog, String version, Integer order, String description, Type type, String script, String checksum, Status status) {
         assertThat(changeLog).as("ChangeLog").isNotNull();
         assertThat(changeLog.getVersion()).as("version").isEqualTo(version);
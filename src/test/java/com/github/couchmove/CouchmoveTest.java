@@ -8,6 +8,7 @@ import org.assertj.core.api.Assertions;
 import org.junit.Assert;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -19,7 +20,6 @@ import static com.github.couchmove.pojo.Type.*;
 import static com.github.couchmove.utils.TestUtils.RANDOM;
 import static com.github.couchmove.utils.TestUtils.getRandomChangeLog;
 import static com.google.common.collect.Lists.newArrayList;
-import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
@@ -44,20 +44,126 @@ public class CouchmoveTest {
     private ChangeLogFileService fileServiceMock;
 
     @Test
-    public void should_migration_fail_if_lock_not_acquired() {
+    public void should_migration_fail_if_lock_not_acquired() throws IOException {
+        when(fileServiceMock.fetch()).thenReturn(newArrayList(getRandomChangeLog()));
+        when(dbServiceMock.fetchAndCompare(any(), any(), eq(true))).thenReturn(newArrayList(getRandomChangeLog()));
         when(lockServiceMock.acquireLock()).thenReturn(false);
         assertThrows(CouchmoveException.class, couchmove::migrate);
+        verify(lockServiceMock, never()).releaseLock();
     }
 
     @Test
     public void should_release_lock_after_migration() throws IOException {
         when(lockServiceMock.acquireLock()).thenReturn(true);
         when(fileServiceMock.fetch()).thenReturn(newArrayList(getRandomChangeLog()));
-        when(dbServiceMock.fetchAndCompare(any())).thenReturn(emptyList());
+        ChangeLog updatedChangeLog = ChangeLog.builder()
+                .version("1")
+                .order(1)
+                .status(EXECUTED)
+                .build();
+        when(dbServiceMock.fetchAndCompare(any(), any(), eq(true))).thenReturn(newArrayList(updatedChangeLog));
+        when(dbServiceMock.fetchAndCompare(any(), any())).thenReturn(newArrayList(updatedChangeLog));
         couchmove.migrate();
         verify(lockServiceMock).releaseLock();
     }
 
+    @Test
+    public void should_not_lock_when_nothing_is_pending() throws IOException {
+        when(fileServiceMock.fetch()).thenReturn(newArrayList(getRandomChangeLog()));
+        ChangeLog executedChangeLog = ChangeLog.builder()
+                .version("1")
+                .order(1)
+                .status(EXECUTED)
+                .build();
+        executedChangeLog.setCas(RANDOM.nextLong());
+        when(dbServiceMock.fetchAndCompare(any(), any(), eq(true))).thenReturn(newArrayList(executedChangeLog));
+        couchmove.migrate();
+        verify(lockServiceMock, never()).acquireLock();
+        verify(dbServiceMock, never()).fetchAndCompare(any(), any());
+        verify(dbServiceMock, never()).saveAsync(any());
+    }
+
+    @Test
+    public void should_not_migrate_when_migrated_by_other_instance_before_lock() throws IOException {
+        // Given a change log that is pending when planning, and executed by an other instance before the lock is acquired
+        when(fileServiceMock.fetch()).thenReturn(newArrayList(getRandomChangeLog()));
+        ChangeLog pendingChangeLog = ChangeLog.builder()
+                .version("1")
+                .build();
+        ChangeLog executedChangeLog = pendingChangeLog.toBuilder()
+                .order(1)
+                .status(EXECUTED)
+                .build();
+        executedChangeLog.setCas(RANDOM.nextLong());
+        when(dbServiceMock.fetchAndCompare(any(), any(), eq(true))).thenReturn(newArrayList(pendingChangeLog));
+        when(dbServiceMock.fetchAndCompare(any(), any())).thenReturn(newArrayList(executedChangeLog));
+        when(lockServiceMock.acquireLock()).thenReturn(true);
+
+        // When we migrate
+        couchmove.migrate();
+
+        // Then nothing should be executed
+        verify(dbServiceMock, never()).saveAsync(any());
+        verify(lockServiceMock).releaseLock();
+    }
+
+    @Test
+    public void should_list_pending_changeLogs_without_lock() throws IOException {
+        // Given an executed change log, an executed one whose description was updated, and two change logs that are not executed yet
+        ChangeLog executedChangeLog = ChangeLog.builder()
+                .version("2")
+                .order(1)
+                .status(EXECUTED)
+                .build();
+        executedChangeLog.setCas(RANDOM.nextLong());
+        ChangeLog updatedChangeLog = ChangeLog.builder()
+                .version("2.1")
+                .order(2)
+                .status(EXECUTED)
+                .build();
+        ChangeLog oldChangeLog = ChangeLog.builder()
+                .version("1")
+                .build();
+        ChangeLog newChangeLog = ChangeLog.builder()
+                .version("3")
+                .build();
+        List<ChangeLog> dbChangeLogs = newArrayList(oldChangeLog, executedChangeLog, updatedChangeLog, newChangeLog);
+        when(fileServiceMock.fetch()).thenReturn(newArrayList(getRandomChangeLog()));
+        when(dbServiceMock.fetchAndCompare(any(), any(), eq(true))).thenReturn(dbChangeLogs);
+
+        // When we list the pending change logs, Then all the change logs the migration would modify should be pending
+        assertThat(couchmove.pendingChangeLogs()).containsExactly(oldChangeLog, updatedChangeLog, newChangeLog);
+        assertThat(couchmove.isUpToDate()).isFalse();
+        assertThat(Couchmove.isPending(dbChangeLogs)).isTrue();
+        verifyNoInteractions(lockServiceMock);
+    }
+
+    @Test
+    public void should_be_up_to_date_when_migration_would_not_lock() throws IOException {
+        // Given executed and skipped change logs
+        ChangeLog executedChangeLog = ChangeLog.builder()
+                .version("2")
+                .order(1)
+                .status(EXECUTED)
+                .build();
+        executedChangeLog.setCas(RANDOM.nextLong());
+        ChangeLog skippedChangeLog = ChangeLog.builder()
+                .version("1")
+                .status(SKIPPED)
+                .build();
+        skippedChangeLog.setCas(RANDOM.nextLong());
+        when(fileServiceMock.fetch()).thenReturn(newArrayList(getRandomChangeLog()));
+        when(dbServiceMock.fetchAndCompare(any(), any(), eq(true))).thenReturn(newArrayList(skippedChangeLog, executedChangeLog));
+
+        // When we check them, Then none should be pending
+        assertThat(couchmove.pendingChangeLogs()).isEmpty();
+        assertThat(couchmove.isUpToDate()).isTrue();
+
+        // And the migration should not lock
+        couchmove.migrate();
+        verifyNoInteractions(lockServiceMock);
+    }
+
     @Test
     public void should_migration_save_updated_changeLog() {
         ChangeLog changeLog = ChangeLog.builder()
@@ -67,7 +173,7 @@ public class CouchmoveTest {
                 .order(1)
                 .build();
         couchmove.executeMigration(newArrayList(changeLog));
-        verify(dbServiceMock).save(changeLog);
+        verify(dbServiceMock).saveAsync(changeLog);
     }
 
     @Test
@@ -79,7 +185,7 @@ public class CouchmoveTest {
                 .build();
         skippedChangeLog.setCas(RANDOM.nextLong());
         couchmove.executeMigration(newArrayList(skippedChangeLog));
-        verify(dbServiceMock, never()).save(any());
+        verify(dbServiceMock, never()).saveAsync(any());
     }
 
     @Test
@@ -89,7 +195,7 @@ public class CouchmoveTest {
                 .status(SKIPPED)
                 .build();
         couchmove.executeMigration(newArrayList(skippedChangeLog));
-        verify(dbServiceMock, never()).save(any());
+        verify(dbServiceMock, never()).saveAsync(any());
     }
 
     @Test
@@ -105,7 +211,7 @@ public class CouchmoveTest {
                 .status(EXECUTED)
                 .build();
         couchmove.executeMigration(newArrayList(changeLogToSkip, executedChangeLog));
-        verify(dbServiceMock).save(changeLogToSkip);
+        verify(dbServiceMock).saveAsync(changeLogToSkip);
         assertThat(changeLogToSkip.getStatus()).isEqualTo(SKIPPED);
     }
 
@@ -132,12 +238,44 @@ public class CouchmoveTest {
     @Test
     public void should_throw_exception_if_migration_failed() {
         Couchmove couchmove = spy(Couchmove.class);
+        couchmove.setDbService(dbServiceMock);
         ChangeLog changeLog = ChangeLog.builder()
                 .version("1")
                 .type(N1QL)
                 .build();
         doThrow(CouchmoveException.class).when(couchmove).executeMigration(changeLog, 1);
         assertThrows(CouchmoveException.class, () -> couchmove.executeMigration(newArrayList(changeLog)));
+        // The statuses are saved before the lock is released
+        verify(dbServiceMock, times(2)).flush();
+    }
+
+    @Test
+    public void should_save_changeLogs_before_executing_next_one() {
+        Couchmove couchmove = spy(Couchmove.class);
+        couchmove.setDbService(dbServiceMock);
+        ChangeLog executedChangeLog = ChangeLog.builder()
+                .version("2")
+                .order(1)
+                .status(EXECUTED)
+                .build();
+        ChangeLog changeLogToSkip = ChangeLog.builder()
+                .version("1")
+                .build();
+        ChangeLog changeLog = ChangeLog.builder()
+                .version("3")
+                .type(N1QL)
+                .build();
+        doNothing().when(couchmove).doExecute(changeLog);
+
+        couchmove.executeMigration(newArrayList(changeLogToSkip, executedChangeLog, changeLog));
+
+        InOrder inOrder = inOrder(dbServiceMock, couchmove);
+        inOrder.verify(dbServiceMock).saveAsync(changeLogToSkip);
+        inOrder.verify(dbServiceMock).saveAsync(executedChangeLog);
+        inOrder.verify(dbServiceMock).flush();
+        inOrder.verify(couchmove).doExecute(changeLog);
+        inOrder.verify(dbServiceMock).saveAsync(changeLog);
+        inOrder.verify(dbServiceMock).flush();
     }
 
     @Test
@@ -148,7 +286,7 @@ public class CouchmoveTest {
                 .type(DESIGN_DOC)
                 .build();
         couchmove.executeMigration(changeLog, 1);
-        verify(dbServiceMock).save(changeLog);
+        verify(dbServiceMock).saveAsync(changeLog);
         assertThat(changeLog.getTimestamp()).isNotNull();
         assertThat(changeLog.getDuration()).isNotNull();
         assertThat(changeLog.getRunner()).isNotNull();
@@ -162,9 +300,9 @@ public class CouchmoveTest {
                 .description("invalid")
                 .type(DOCUMENTS)
                 .build();
-        doThrow(CouchmoveException.class).when(dbServiceMock).importDocuments(any());
+        doThrow(CouchmoveException.class).when(dbServiceMock).importDocuments(any(), any());
         assertThrows(CouchmoveException.class, () -> couchmove.executeMigration(changeLog, 1));
-        verify(dbServiceMock).save(changeLog);
+        verify(dbServiceMock).saveAsync(changeLog);
         assertThat(changeLog.getTimestamp()).isNotNull();
         assertThat(changeLog.getDuration()).isNotNull();
         assertThat(changeLog.getRunner()).isNotNull();
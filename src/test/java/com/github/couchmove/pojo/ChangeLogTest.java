@@ -1,5 +1,6 @@
 package com.github.couchmove.pojo;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -30,4 +31,16 @@ public class ChangeLogTest {
     public void compareTo(String v1, String v2, int expected) {
         assertThat(ChangeLog.builder().version(v1).build().compareTo(ChangeLog.builder().version(v2).build())).isEqualTo(expected);
     }
+
+    @Test
+    public void should_parse_version_again_when_changed() {
+        ChangeLog changeLog = ChangeLog.builder().version("0.9").build();
+        ChangeLog other = ChangeLog.builder().version("0.10").build();
+        assertThat(changeLog.compareTo(other)).isEqualTo(-1);
+
+        changeLog.setVersion("0.11");
+
+        assertThat(changeLog.getVersionKey().getVersion()).isEqualTo("0.11");
+        assertThat(changeLog.compareTo(other)).isEqualTo(1);
+    }
 }
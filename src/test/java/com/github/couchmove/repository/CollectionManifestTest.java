@@ -0,0 +1,67 @@
+package com.github.couchmove.repository;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.manager.collection.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CollectionManifestTest {
+
+    @Mock
+    private Bucket bucket;
+
+    @Mock
+    private CollectionManager collectionManager;
+
+    private CollectionManifest manifest;
+
+    @BeforeEach
+    void init() {
+        lenient().when(bucket.name()).thenReturn("default");
+        when(bucket.collections()).thenReturn(collectionManager);
+        when(collectionManager.getAllScopes(any(GetAllScopesOptions.class))).thenReturn(Collections.singletonList(
+                ScopeSpec.create("scope", newHashSet(CollectionSpec.create("collection1", "scope"), CollectionSpec.create("collection2", "scope")))));
+        manifest = new CollectionManifest(bucket);
+    }
+
+    @Test
+    void should_fetch_scopes_once() {
+        assertThat(manifest.containsCollection("scope", "collection1")).isTrue();
+        assertThat(manifest.containsCollection("scope", "unknown")).isFalse();
+        assertThat(manifest.containsCollection("unknown", "collection1")).isFalse();
+        assertThat(manifest.getCollectionNames("scope")).containsExactlyInAnyOrder("collection1", "collection2");
+
+        verify(collectionManager, times(1)).getAllScopes(any(GetAllScopesOptions.class));
+    }
+
+    @Test
+    void should_fetch_scopes_again_after_invalidation() {
+        manifest.getAllScopes();
+        manifest.invalidate();
+        manifest.getAllScopes();
+
+        verify(collectionManager, times(2)).getAllScopes(any(GetAllScopesOptions.class));
+    }
+
+    @Test
+    void should_fetch_scopes_again_after_expiration() {
+        manifest = new CollectionManifest(bucket, Duration.ZERO);
+
+        manifest.getAllScopes();
+        manifest.getAllScopes();
+
+        verify(collectionManager, times(2)).getAllScopes(any(GetAllScopesOptions.class));
+    }
+}
@@ -77,6 +77,25 @@ public class CouchbaseRepositoryIT extends BaseIT {
         assertThat(result.getCas()).isEqualTo(savedChangeLog.getCas());
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryParams")
+    public void should_find_all_entities_in_order(String description, CouchbaseRepository<ChangeLog> repository) {
+        // Given two changeLogs saved on couchbase
+        ChangeLog changeLog1 = TestUtils.getRandomChangeLog();
+        ChangeLog changeLog2 = TestUtils.getRandomChangeLog();
+        String id1 = getRandomString();
+        String id2 = getRandomString();
+        repository.save(id1, changeLog1);
+        repository.save(id2, changeLog2);
+
+        // When we get them with an absent one
+        List<ChangeLog> result = repository.findAll(Arrays.asList(id2, getRandomString(), id1));
+
+        // Then they should be returned in the same order, with null for the absent one
+        assertThat(result).containsExactly(changeLog2, null, changeLog1);
+        assertThat(result.get(0).getCas()).isNotNull();
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource("repositoryParams")
     public void should_delete_entity(String description, CouchbaseRepository<ChangeLog> repository) {
@@ -208,6 +227,16 @@ public class CouchbaseRepositoryIT extends BaseIT {
         getCluster().queryIndexes().dropIndex(getBucket().name(), INDEX_NAME);
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryParams")
+    public void should_execute_n1ql_returning_many_rows(String description, CouchbaseRepository<ChangeLog> repository) {
+        // Given a request returning many rows
+        String request = "SELECT RAW REPEAT('x', 1000) FROM ARRAY_RANGE(0, 100000) AS i";
+
+        // When we execute the query, then its rows should be consumed without error
+        repository.query(request);
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource("repositoryParams")
     public void should_execute_n1ql_parse_fail(String description, CouchbaseRepository<ChangeLog> repository) {
@@ -0,0 +1,177 @@
+package com.github.couchmove.service;
+
+import com.couchbase.client.core.error.RequestCanceledException;
+import com.couchbase.client.core.error.TemporaryFailureException;
+import com.couchbase.client.core.msg.CancellationReason;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.couchmove.service.AdaptiveConcurrencyLimiter.INITIAL_LIMIT;
+import static com.github.couchmove.service.AdaptiveConcurrencyLimiter.WINDOW_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void should_grow_limit_on_success_up_to_maximum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10);
+        assertThat(limiter.getLimit()).isEqualTo(INITIAL_LIMIT);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            limiter.onSuccess(start, 1_000);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void should_halve_limit_once_on_backpressure() {
+        // Given a limiter that reached its maximum
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16);
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            limiter.onSuccess(start, 1_000);
+        }
+
+        // When operations fail because of backpressure
+        limiter.onBackpressure(start);
+        limiter.onBackpressure(start);
+
+        // Then the limit should be halved only once for operations started before the decrease
+        assertThat(limiter.getLimit()).isEqualTo(8);
+        limiter.onBackpressure(System.nanoTime() + 1);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    public void should_decrease_limit_when_latency_rises() {
+        // Given a baseline latency
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(64);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            limiter.onSuccess(System.nanoTime(), 1_000);
+        }
+        int limit = limiter.getLimit();
+
+        // When the latency rises above the tolerance
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            limiter.onSuccess(System.nanoTime(), 10_000);
+        }
+
+        // Then the limit should decrease
+        assertThat(limiter.getLimit()).isLessThan(limit);
+    }
+
+    @Test
+    public void should_never_exceed_limit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        Flux.range(0, 200)
+                .flatMap(i -> limiter.run(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return Mono.delay(Duration.ofMillis(1))
+                            .doOnNext(tick -> inFlight.decrementAndGet());
+                }), 64)
+                .blockLast();
+
+        assertThat(maxInFlight.get()).isBetween(1, 8);
+    }
+
+    @Test
+    public void should_retry_on_backpressure() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = limiter.run(() -> attempts.incrementAndGet() < 3
+                ? Mono.<String>error(new TemporaryFailureException(null))
+                : Mono.just("saved")).block();
+
+        assertThat(result).isEqualTo("saved");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(limiter.getLimit()).isLessThan(INITIAL_LIMIT);
+    }
+
+    @Test
+    public void should_not_retry_other_errors() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> limiter.run(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new IllegalStateException("invalid"));
+        }).block());
+
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_retry_requests_cancelled_by_too_many_retries() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = limiter.run(() -> attempts.incrementAndGet() < 2
+                ? Mono.<String>error(new RequestCanceledException("upsert", CancellationReason.TOO_MANY_REQUESTS_IN_RETRY, null))
+                : Mono.just("saved")).block();
+
+        assertThat(result).isEqualTo("saved");
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(limiter.getLimit()).isLessThan(INITIAL_LIMIT);
+    }
+
+    @Test
+    public void should_fail_immediately_requests_cancelled_on_shutdown() {
+        // Given an operation cancelled because the SDK is shutting down
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When it is run
+        assertThrows(RequestCanceledException.class, () -> limiter.run(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new RequestCanceledException("upsert", CancellationReason.SHUTDOWN, null));
+        }).block());
+
+        // Then it should neither be retried nor decrease the limit
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(limiter.getLimit()).isEqualTo(INITIAL_LIMIT);
+    }
+
+    @Test
+    public void should_keep_permits_when_waiting_operation_is_cancelled() {
+        // Given an operation in flight with a limit of one
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1);
+        Sinks.One<String> first = Sinks.one();
+        limiter.run(first::asMono).subscribe();
+
+        // When an operation waiting for a permit is cancelled
+        AtomicInteger started = new AtomicInteger();
+        limiter.run(() -> {
+            started.incrementAndGet();
+            return Mono.just("cancelled");
+        }).subscribe().dispose();
+
+        // Then it should never start, and the permit should be granted again once released
+        assertThat(started.get()).isZero();
+        Sinks.One<String> second = Sinks.one();
+        limiter.run(() -> {
+            started.incrementAndGet();
+            return second.asMono();
+        }).subscribe();
+        limiter.run(() -> {
+            started.incrementAndGet();
+            return Mono.just("third");
+        }).subscribe();
+        assertThat(started.get()).isZero();
+        first.tryEmitValue("first");
+        assertThat(started.get()).isEqualTo(1);
+        second.tryEmitValue("second");
+        assertThat(started.get()).isEqualTo(2);
+    }
+}
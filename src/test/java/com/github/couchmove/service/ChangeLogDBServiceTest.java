@@ -1,29 +1,46 @@
 package com.github.couchmove.service;
 
+import com.couchbase.client.core.msg.kv.MutationToken;
+import com.couchbase.client.java.kv.MutationResult;
+import com.couchbase.client.java.query.QueryScanConsistency;
 import com.github.couchmove.exception.CouchmoveException;
 import com.github.couchmove.pojo.ChangeLog;
+import com.github.couchmove.pojo.ChangeLogSummary;
+import com.github.couchmove.pojo.Document;
 import com.github.couchmove.repository.CouchbaseRepository;
+import com.github.couchmove.repository.QueryHints;
 import com.google.common.collect.Lists;
 import org.assertj.core.api.Assertions;
 import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
 
+import static com.github.couchmove.pojo.ChecksumAlgorithm.MURMUR3_128;
+import static com.github.couchmove.pojo.ChecksumAlgorithm.SHA_256;
+import static com.github.couchmove.pojo.Status.EXECUTED;
 import static com.github.couchmove.pojo.Status.FAILED;
 import static com.github.couchmove.service.ChangeLogDBService.PREFIX_ID;
+import static com.github.couchmove.service.ChangeLogDBService.SUMMARY_ID;
+import static com.github.couchmove.service.ChangeLogDBService.deferIndexBuild;
+import static com.github.couchmove.service.ChangeLogDBService.extractHintedRequests;
 import static com.github.couchmove.service.ChangeLogDBService.extractRequests;
 import static com.github.couchmove.utils.TestUtils.*;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.Mockito.lenient;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * @author ctayeb
@@ -35,6 +52,9 @@ public class ChangeLogDBServiceTest {
     @Mock
     private CouchbaseRepository<ChangeLog> repository;
 
+    @Mock
+    private CouchbaseRepository<ChangeLogSummary> summaryRepository;
+
     private ChangeLogDBService service;
 
     @BeforeEach
@@ -46,7 +66,7 @@ public class ChangeLogDBServiceTest {
     @Test
     public void should_fetch_return_same_changeLogs_when_absent() {
         // Given changeLogs stored in DB
-        when(repository.findOne(Mockito.anyString())).thenReturn(null);
+        when(repository.findAll(Mockito.anyList())).thenReturn(Arrays.asList(null, null));
 
         // When we call service with the later
         List<ChangeLog> changeLogs = Lists.newArrayList(getRandomChangeLog(), getRandomChangeLog());
@@ -61,10 +81,10 @@ public class ChangeLogDBServiceTest {
         // Given changeLogs stored in DB
         ChangeLog changeLog1 = getRandomChangeLog();
         changeLog1.setCas(RANDOM.nextLong());
-        when(repository.findOne(PREFIX_ID + changeLog1.getVersion())).thenReturn(changeLog1);
         ChangeLog changeLog2 = getRandomChangeLog();
         changeLog2.setCas(RANDOM.nextLong());
-        when(repository.findOne(PREFIX_ID + changeLog2.getVersion())).thenReturn(changeLog2);
+        when(repository.findAll(Arrays.asList(PREFIX_ID + changeLog1.getVersion(), PREFIX_ID + changeLog2.getVersion())))
+                .thenReturn(Arrays.asList(changeLog1, changeLog2));
 
         // When we call service with the later
         List<ChangeLog> changeLogs = Lists.newArrayList(changeLog1, changeLog2);
@@ -80,7 +100,7 @@ public class ChangeLogDBServiceTest {
     public void should_fetch_fail_when_checksum_does_not_match() {
         // Given a changeLog stored on DB
         ChangeLog dbChangeLog = getRandomChangeLog();
-        when(repository.findOne(PREFIX_ID + dbChangeLog.getVersion())).thenReturn(dbChangeLog);
+        when(repository.findAll(singletonList(PREFIX_ID + dbChangeLog.getVersion()))).thenReturn(singletonList(dbChangeLog));
 
         // And a changeLog with same version but different checksum
         ChangeLog changeLog = getRandomChangeLog();
@@ -97,7 +117,7 @@ public class ChangeLogDBServiceTest {
         ChangeLog dbChangeLog = getRandomChangeLog();
         dbChangeLog.setChecksum(null);
         dbChangeLog.setCas(RANDOM.nextLong());
-        when(repository.findOne(PREFIX_ID + dbChangeLog.getVersion())).thenReturn(dbChangeLog);
+        when(repository.findAll(singletonList(PREFIX_ID + dbChangeLog.getVersion()))).thenReturn(singletonList(dbChangeLog));
 
         // And a changeLog with different description
         ChangeLog changeLog = dbChangeLog.toBuilder()
@@ -118,8 +138,9 @@ public class ChangeLogDBServiceTest {
         // Given a failed changeLog stored on DB
         ChangeLog dbChangeLog = getRandomChangeLog();
         dbChangeLog.setStatus(FAILED);
+        dbChangeLog.setCheckpoint(RANDOM.nextLong());
         dbChangeLog.setCas(RANDOM.nextLong());
-        when(repository.findOne(PREFIX_ID + dbChangeLog.getVersion())).thenReturn(dbChangeLog);
+        when(repository.findAll(singletonList(PREFIX_ID + dbChangeLog.getVersion()))).thenReturn(singletonList(dbChangeLog));
 
         // And a changeLog with different checksum
         String newChecksum = getRandomString();
@@ -134,6 +155,7 @@ public class ChangeLogDBServiceTest {
         assertThat(results).hasSize(1);
         ChangeLog result = results.get(0);
         assertThat(result.getStatus()).as("status").isNull();
+        assertThat(result.getCheckpoint()).as("checkpoint").isNull();
         assertThat(result.getCas()).as("cas").isNotNull();
         assertThat(result.getDescription()).as("description").isEqualTo(dbChangeLog.getDescription());
         assertThat(result.getVersion()).as( "version").isEqualTo(dbChangeLog.getVersion());
@@ -142,12 +164,79 @@ public class ChangeLogDBServiceTest {
         assertThat(newChecksum).as("checksum").isEqualTo(result.getChecksum());
     }
 
+    @Test
+    public void should_verify_checksum_recorded_with_another_algorithm() {
+        // Given a changeLog stored on DB with a SHA-256 checksum
+        ChangeLog dbChangeLog = getRandomChangeLog();
+        dbChangeLog.setCas(RANDOM.nextLong());
+        when(repository.findAll(singletonList(PREFIX_ID + dbChangeLog.getVersion()))).thenReturn(singletonList(dbChangeLog));
+        String sha256Checksum = dbChangeLog.getChecksum();
+
+        // And the same changeLog fetched with a MurmurHash3 checksum
+        ChangeLog changeLog = dbChangeLog.toBuilder()
+                .checksum(getRandomString())
+                .checksumAlgorithm(MURMUR3_128)
+                .build();
+
+        // When we call service with the later
+        List<ChangeLog> result = service.fetchAndCompare(Lists.newArrayList(changeLog),
+                (c, algorithm) -> algorithm == SHA_256 ? sha256Checksum : null);
+
+        // Then the recorded checksum should be verified and kept
+        assertThat(result).containsExactly(dbChangeLog);
+        assertThat(dbChangeLog.getChecksum()).isEqualTo(sha256Checksum);
+        assertThat(dbChangeLog.getChecksumAlgorithm()).isNull();
+        assertThat(dbChangeLog.getCas()).isNotNull();
+    }
+
+    @Test
+    public void should_restamp_checksum_recorded_with_another_algorithm() {
+        // Given a changeLog stored on DB with a SHA-256 checksum
+        ChangeLog dbChangeLog = getRandomChangeLog();
+        dbChangeLog.setCas(RANDOM.nextLong());
+        when(repository.findAll(singletonList(PREFIX_ID + dbChangeLog.getVersion()))).thenReturn(singletonList(dbChangeLog));
+        String sha256Checksum = dbChangeLog.getChecksum();
+
+        // And the same changeLog fetched with a MurmurHash3 checksum
+        String murmurChecksum = getRandomString();
+        ChangeLog changeLog = dbChangeLog.toBuilder()
+                .checksum(murmurChecksum)
+                .checksumAlgorithm(MURMUR3_128)
+                .build();
+
+        // When we call service with the later, re-stamping checksums
+        service.setRestampChecksums(true);
+        List<ChangeLog> result = service.fetchAndCompare(Lists.newArrayList(changeLog), (c, algorithm) -> sha256Checksum);
+
+        // Then the checksum should be replaced, to be saved
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getChecksum()).isEqualTo(murmurChecksum);
+        assertThat(result.get(0).getChecksumAlgorithm()).isEqualTo(MURMUR3_128);
+        assertThat(result.get(0).getCas()).isNull();
+    }
+
+    @Test
+    public void should_fetch_fail_when_checksum_recorded_with_another_algorithm_does_not_match() {
+        // Given a changeLog stored on DB with a SHA-256 checksum
+        ChangeLog dbChangeLog = getRandomChangeLog();
+        when(repository.findAll(singletonList(PREFIX_ID + dbChangeLog.getVersion()))).thenReturn(singletonList(dbChangeLog));
+
+        // And a modified changeLog fetched with a MurmurHash3 checksum
+        ChangeLog changeLog = dbChangeLog.toBuilder()
+                .checksum(getRandomString())
+                .checksumAlgorithm(MURMUR3_128)
+                .build();
+
+        // When we call service with the later, Then an exception should rise
+        assertThrows(CouchmoveException.class, () -> service.fetchAndCompare(Lists.newArrayList(changeLog), (c, algorithm) -> getRandomString()));
+    }
+
     @Test
     public void should_return_updated_changeLog_with_cas_reset_if_description_changed() {
         // Given a changeLog stored on DB
         ChangeLog dbChangeLog = getRandomChangeLog();
         dbChangeLog.setCas(RANDOM.nextLong());
-        when(repository.findOne(PREFIX_ID + dbChangeLog.getVersion())).thenReturn(dbChangeLog);
+        when(repository.findAll(singletonList(PREFIX_ID + dbChangeLog.getVersion()))).thenReturn(singletonList(dbChangeLog));
 
         // And a changeLog with different description
         ChangeLog changeLog = dbChangeLog.toBuilder()
@@ -164,6 +253,99 @@ public class ChangeLogDBServiceTest {
         assertThat(changeLog.getCas()).isNull();
     }
 
+    @Test
+    public void should_fetch_summarized_changeLogs_without_reading_them() {
+        // Given an executed changeLog in the summary, and a failed one that is not up-to-date in it
+        ChangeLog executed = getRandomChangeLog();
+        executed.setStatus(EXECUTED);
+        executed.setOrder(1);
+        executed.setCas(RANDOM.nextLong());
+        ChangeLog failed = getRandomChangeLog();
+        failed.setStatus(FAILED);
+        failed.setCas(RANDOM.nextLong());
+        ChangeLogSummary summary = new ChangeLogSummary();
+        summary.getChangeLogs().put(executed.getVersion(), ChangeLogSummary.Entry.of(executed));
+        summary.getChangeLogs().put(failed.getVersion(), ChangeLogSummary.Entry.of(failed));
+        when(summaryRepository.findOne(SUMMARY_ID)).thenReturn(summary);
+        when(repository.findAllCas(singletonList(PREFIX_ID + executed.getVersion()))).thenReturn(singletonList(executed.getCas()));
+        when(repository.findAll(singletonList(PREFIX_ID + failed.getVersion()))).thenReturn(singletonList(failed));
+        service = new ChangeLogDBService(repository, summaryRepository);
+        service.setUseSummary(true);
+
+        // When we fetch them
+        List<ChangeLog> result = service.fetchAndCompare(Lists.newArrayList(
+                executed.toBuilder().status(null).order(null).build(),
+                failed.toBuilder().status(null).build()));
+
+        // Then only the failed one should be read from its document
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getStatus()).isEqualTo(EXECUTED);
+        assertThat(result.get(0).getOrder()).isEqualTo(1);
+        assertThat(result.get(0).getCas()).isEqualTo(executed.getCas());
+        assertThat(result.get(1)).isSameAs(failed);
+        verify(summaryRepository, never()).checkAndSave(any(), any());
+    }
+
+    @Test
+    public void should_read_changeLogs_modified_since_summarized() {
+        // Given an executed changeLog in the summary, whose document checksum was reset since
+        ChangeLog executed = getRandomChangeLog();
+        executed.setStatus(EXECUTED);
+        executed.setCas(RANDOM.nextLong());
+        ChangeLogSummary summary = new ChangeLogSummary();
+        summary.getChangeLogs().put(executed.getVersion(), ChangeLogSummary.Entry.of(executed));
+        ChangeLog reset = executed.toBuilder().checksum(null).build();
+        reset.setCas(executed.getCas() + 1);
+        when(summaryRepository.findOne(SUMMARY_ID)).thenReturn(summary);
+        when(repository.findAllCas(singletonList(PREFIX_ID + executed.getVersion()))).thenReturn(singletonList(reset.getCas()));
+        when(repository.findAll(singletonList(PREFIX_ID + executed.getVersion()))).thenReturn(singletonList(reset));
+        service = new ChangeLogDBService(repository, summaryRepository);
+        service.setUseSummary(true);
+
+        // When we fetch it
+        List<ChangeLog> result = service.fetchAndCompare(Lists.newArrayList(executed.toBuilder().status(null).build()));
+
+        // Then it should be read from its document, and its checksum reset
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getChecksum()).isEqualTo(executed.getChecksum());
+        assertThat(result.get(0).getCas()).isNull();
+    }
+
+    @Test
+    public void should_not_summarize_unfinished_changeLogs() {
+        // Given a changeLog being imported
+        ChangeLog running = getRandomChangeLog();
+        running.setCheckpoint(RANDOM.nextLong());
+        when(repository.save(PREFIX_ID + running.getVersion(), running)).thenReturn(running);
+        service = new ChangeLogDBService(repository, summaryRepository);
+        service.setUseSummary(true);
+
+        // When we save its checkpoint
+        service.save(running);
+
+        // Then the summary should not be read nor written
+        verifyNoInteractions(summaryRepository);
+    }
+
+    @Test
+    public void should_add_read_changeLogs_to_summary() {
+        // Given an executed changeLog without summary
+        ChangeLog executed = getRandomChangeLog();
+        executed.setStatus(EXECUTED);
+        executed.setCas(RANDOM.nextLong());
+        when(repository.findAll(singletonList(PREFIX_ID + executed.getVersion()))).thenReturn(singletonList(executed));
+        service = new ChangeLogDBService(repository, summaryRepository);
+        service.setUseSummary(true);
+
+        // When we fetch it
+        service.fetchAndCompare(Lists.newArrayList(executed.toBuilder().build()));
+
+        // Then it should be added to the summary
+        ArgumentCaptor<ChangeLogSummary> summary = ArgumentCaptor.forClass(ChangeLogSummary.class);
+        verify(summaryRepository).checkAndSave(eq(SUMMARY_ID), summary.capture());
+        assertThat(summary.getValue().getChangeLogs()).containsEntry(executed.getVersion(), ChangeLogSummary.Entry.of(executed));
+    }
+
     @Test
     public void should_skip_n1ql_blank_and_comment_lines() {
         String request1 = "CREATE INDEX 'user_index' ON default\n" +
@@ -177,4 +359,96 @@ public class ChangeLogDBServiceTest {
 
         assertThat(extractRequests(sql)).containsExactly(request1, request2);
     }
+
+    @Test
+    public void should_extract_hints_of_requests() {
+        String request1 = "UPDATE default SET name = 'toto' WHERE type = 'user'";
+        String request2 = "INSERT { 'name': 'titi'} INTO default";
+        String sql = "-- @couchmove consistency=not_bounded maxParallelism=8\n" +
+                "-- update users\n" +
+                "-- @couchmove timeout=30m readonly=false\n" +
+                request1 + ";\n" +
+                request2 + ";";
+
+        List<N1qlRequest> requests = extractHintedRequests(sql);
+
+        assertThat(requests).containsExactly(
+                new N1qlRequest(request1, QueryHints.builder()
+                        .consistency(QueryScanConsistency.NOT_BOUNDED)
+                        .maxParallelism(8)
+                        .timeout(Duration.ofMinutes(30))
+                        .readonly(false)
+                        .build()),
+                new N1qlRequest(request2, QueryHints.DEFAULT));
+    }
+
+    @Test
+    public void should_fail_on_unknown_hint() {
+        assertThrows(CouchmoveException.class, () -> extractHintedRequests("-- @couchmove consistency=at_plus\nSELECT 1"));
+        assertThrows(CouchmoveException.class, () -> extractHintedRequests("-- @couchmove parallelism=8\nSELECT 1"));
+    }
+
+    @Test
+    public void should_defer_index_builds() {
+        Map<String, List<String>> deferredIndexes = new LinkedHashMap<>();
+
+        assertThat(deferIndexBuild("CREATE INDEX idx_name ON `${bucket}`(name) WHERE type = 'user'", deferredIndexes))
+                .isEqualTo("CREATE INDEX idx_name ON `${bucket}`(name) WHERE type = 'user' WITH {\"defer_build\": true}");
+        assertThat(deferIndexBuild("create index `idx_age` if not exists on default:`${bucket}`.users.profiles(age) with {\"num_replica\": 1}", deferredIndexes))
+                .isEqualTo("create index `idx_age` if not exists on default:`${bucket}`.users.profiles(age) with {\"defer_build\": true, \"num_replica\": 1}");
+        assertThat(deferIndexBuild("CREATE PRIMARY INDEX ON `${bucket}` WITH {}", deferredIndexes))
+                .isEqualTo("CREATE PRIMARY INDEX ON `${bucket}` WITH {\"defer_build\": true}");
+        // Already deferred indexes and other requests are not modified
+        assertThat(deferIndexBuild("CREATE INDEX idx_type ON `${bucket}`(type) WITH {\"defer_build\": true}", deferredIndexes))
+                .isEqualTo("CREATE INDEX idx_type ON `${bucket}`(type) WITH {\"defer_build\": true}");
+        assertThat(deferIndexBuild("INSERT INTO `${bucket}` VALUES ('id', {'type': 'index'})", deferredIndexes))
+                .isEqualTo("INSERT INTO `${bucket}` VALUES ('id', {'type': 'index'})");
+        // defer_build out of the WITH clause doesn't prevent deferring
+        assertThat(deferIndexBuild("CREATE INDEX idx_defer_build ON `${bucket}`(mode) WHERE mode = 'defer_build' WITH { \"nodes\": [\"n1:8091\"] }", deferredIndexes))
+                .isEqualTo("CREATE INDEX idx_defer_build ON `${bucket}`(mode) WHERE mode = 'defer_build' WITH { \"defer_build\": true, \"nodes\": [\"n1:8091\"] }");
+
+        assertThat(deferredIndexes).containsExactly(
+                entry("`${bucket}`", Arrays.asList("idx_name", "#primary", "idx_defer_build")),
+                entry("default:`${bucket}`.users.profiles", singletonList("`idx_age`")));
+    }
+
+    @Test
+    public void should_build_deferred_indexes_once_per_keyspace() {
+        service.setBatchIndexBuilds(true);
+
+        service.executeN1ql("CREATE INDEX idx1 ON `${bucket}`(a);\n" +
+                "CREATE INDEX idx2 ON `${bucket}`(b);");
+
+        InOrder inOrder = inOrder(repository);
+        inOrder.verify(repository).query("CREATE INDEX idx1 ON `${bucket}`(a) WITH {\"defer_build\": true}", QueryHints.DEFAULT);
+        inOrder.verify(repository).query("CREATE INDEX idx2 ON `${bucket}`(b) WITH {\"defer_build\": true}", QueryHints.DEFAULT);
+        inOrder.verify(repository).buildN1qlIndexes("`${bucket}`", Arrays.asList("idx1", "idx2"), null);
+    }
+
+    @Test
+    public void should_query_consistent_with_imported_documents() {
+        // Given a service running requests consistent with imported documents
+        service.setAtPlusConsistency(true);
+        MutationToken token = new MutationToken((short) 1, 11, 101, "default");
+        MutationResult result = mock(MutationResult.class);
+        when(result.mutationToken()).thenReturn(Optional.of(token));
+        when(repository.saveAsync("doc", "{}".getBytes())).thenReturn(Mono.just(result));
+
+        // When we import a document, then execute requests
+        service.importDocuments(Stream.of(new Document(null, null, "doc.json", "{}")), getRandomChangeLog());
+        service.executeN1ql("SELECT * FROM `${bucket}`;\n" +
+                "-- @couchmove consistency=not_bounded\n" +
+                "SELECT 1;\n" +
+                "UPDATE `${bucket}` SET imported = true;\n" +
+                "SELECT * FROM `${bucket}` WHERE imported");
+
+        // Then requests should be consistent with the imported document until a request modifies documents
+        ArgumentCaptor<QueryHints> hintsCaptor = ArgumentCaptor.forClass(QueryHints.class);
+        verify(repository, times(4)).query(anyString(), hintsCaptor.capture());
+        List<QueryHints> hints = hintsCaptor.getAllValues();
+        assertThat(hints.get(0).getConsistentWith()).containsExactly(token);
+        assertThat(hints.get(1)).isEqualTo(QueryHints.builder().consistency(QueryScanConsistency.NOT_BOUNDED).build());
+        assertThat(hints.get(2).getConsistentWith()).containsExactly(token);
+        assertThat(hints.get(3)).isEqualTo(QueryHints.DEFAULT);
+    }
 }
@@ -46,9 +46,14 @@ public class ChangeLogFileServiceTest {
     public void should_get_right_type_from_file() {
         // For folder
         assertThat(ChangeLogFileService.getChangeLogType(FileUtils.getTempDirectory().toPath())).isEqualTo(Type.DOCUMENTS);
+        // For archives
+        assertThat(ChangeLogFileService.getChangeLogType(Paths.get("toto.zip"))).isEqualTo(Type.DOCUMENTS);
+        assertThat(ChangeLogFileService.getChangeLogType(Paths.get("toto.tar.gz"))).isEqualTo(Type.DOCUMENTS);
         // For JSON file
         assertThat(ChangeLogFileService.getChangeLogType(Paths.get("toto.json"))).isEqualTo(Type.DESIGN_DOC);
         assertThat(ChangeLogFileService.getChangeLogType(Paths.get("toto.JSON"))).isEqualTo(Type.DESIGN_DOC);
+        // For JSON Lines files
+        assertThat(ChangeLogFileService.getChangeLogType(Paths.get("toto.jsonl"))).isEqualTo(Type.JSONL);
         // For N1QL files
         assertThat(ChangeLogFileService.getChangeLogType(Paths.get("toto.n1ql"))).isEqualTo(Type.N1QL);
         assertThat(ChangeLogFileService.getChangeLogType(Paths.get("toto.N1QL"))).isEqualTo(Type.N1QL);
@@ -128,7 +133,7 @@ public class ChangeLogFileServiceTest {
         // Then we should get have this changelogs in the same order
         assertThat(results).hasSize(2);
         assertThat(results)
-                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("checksum", "description")
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("checksum", "description", "versionKey")
                 .containsExactlyInAnyOrder(
                         ChangeLog.builder()
                                 .type(Type.DESIGN_DOC)
@@ -143,4 +148,46 @@ public class ChangeLogFileServiceTest {
                 );
     }
 
+    @Test
+    public void should_fetch_changeLogs_from_index() throws IOException {
+        // Given a change folder with its index
+        File tempDir = Files.createTempDir();
+        tempDir.deleteOnExit();
+        Files.write("content1".getBytes(), new File(tempDir, "V1__user.json"));
+        Files.write("content2".getBytes(), new File(tempDir, "V2__index.n1ql"));
+        ChangeLogFileService fileService = new ChangeLogFileService(tempDir.getPath());
+        List<ChangeLog> changeLogs = fileService.fetch();
+        ChangeLogIndex.main(new String[]{tempDir.getPath()});
+        fileService.setUseIndex(true);
+
+        // When a script is modified after the index was generated
+        Files.write("modified".getBytes(), new File(tempDir, "V2__index.n1ql"));
+
+        // Then the change logs of the index should be fetched, without hashing the scripts
+        assertThat(fileService.fetch()).isEqualTo(changeLogs);
+        // Unless the index is not enabled
+        fileService.setUseIndex(false);
+        assertThat(fileService.fetch()).isNotEqualTo(changeLogs);
+    }
+
+    @Test
+    public void should_ignore_stale_index() throws IOException {
+        // Given a change folder with its index
+        File tempDir = Files.createTempDir();
+        tempDir.deleteOnExit();
+        Files.write("content1".getBytes(), new File(tempDir, "V1__user.json"));
+        Files.write("content2".getBytes(), new File(tempDir, "V2__index.n1ql"));
+        ChangeLogIndex.main(new String[]{tempDir.getPath()});
+        ChangeLogFileService fileService = new ChangeLogFileService(tempDir.getPath());
+        fileService.setUseIndex(true);
+
+        // When a file is added after the index was generated
+        Files.write("content3".getBytes(), new File(tempDir, "V3__other.n1ql"));
+
+        // Then the change folder should be hashed instead
+        assertThat(fileService.fetch())
+                .extracting(ChangeLog::getScript)
+                .containsExactly("V1__user.json", "V2__index.n1ql", "V3__other.n1ql");
+    }
+
 }
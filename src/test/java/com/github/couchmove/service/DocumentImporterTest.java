@@ -0,0 +1,205 @@
+package com.github.couchmove.service;
+
+import com.couchbase.client.core.msg.kv.MutationToken;
+import com.couchbase.client.java.kv.MutationResult;
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.ChangeLog;
+import com.github.couchmove.pojo.Document;
+import com.github.couchmove.pojo.ImportReport;
+import com.github.couchmove.repository.CouchbaseRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DocumentImporterTest {
+
+    private static final byte[] EMPTY_JSON = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] INVALID_JSON = "{".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private CouchbaseRepository<ChangeLog> repository;
+
+    @Mock
+    private CouchbaseRepository<ChangeLog> collectionRepository;
+
+    @Test
+    public void should_import_all_documents() {
+        // Given documents to import
+        List<Document> documents = IntStream.range(0, 100)
+                .mapToObj(i -> new Document(null, null, "doc" + i + ".json", "{}"))
+                .collect(Collectors.toList());
+        when(repository.saveAsync(anyString(), any(byte[].class))).thenReturn(Mono.just(mock(MutationResult.class)));
+
+        // When we import them
+        ImportReport report = new DocumentImporter(repository, 8).importDocuments(documents.stream());
+
+        // Then all of them should be saved with their file name as key
+        assertThat(report.getImported()).isEqualTo(100);
+        assertThat(report.getFailures()).isEmpty();
+        verify(repository).saveAsync("doc42", EMPTY_JSON);
+    }
+
+    @Test
+    public void should_import_documents_in_their_collection() {
+        // Given a document in a scope collection
+        Document document = new Document("scope", "collection", "doc.json", "{}");
+        when(repository.withCollection("scope", "collection")).thenReturn(collectionRepository);
+        when(collectionRepository.saveAsync("doc", EMPTY_JSON)).thenReturn(Mono.just(mock(MutationResult.class)));
+
+        // When we import it
+        new DocumentImporter(repository, 1).importDocuments(Stream.of(document));
+
+        // Then it should be saved in the collection
+        verify(collectionRepository).saveAsync("doc", EMPTY_JSON);
+        verify(repository, never()).saveAsync(anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void should_report_all_failed_documents() {
+        // Given a document that fails to be saved among valid ones
+        Document valid = new Document(null, null, "valid.json", "{}");
+        Document invalid = new Document(null, null, "invalid.json", "{");
+        when(repository.saveAsync("valid", EMPTY_JSON)).thenReturn(Mono.just(mock(MutationResult.class)));
+        when(repository.saveAsync("invalid", INVALID_JSON)).thenReturn(Mono.error(new IllegalStateException("invalid")));
+
+        // When we import them, Then an exception should rise
+        assertThrows(CouchmoveException.class, () -> new DocumentImporter(repository, 2).importDocuments(Stream.of(invalid, valid)));
+
+        // And the valid document should have been saved anyway
+        verify(repository).saveAsync("valid", EMPTY_JSON);
+    }
+
+    @Test
+    public void should_read_content_only_when_importing() {
+        // Given a document whose content can not be read
+        Document unreadable = new Document(null, null, "unreadable.json", () -> {
+            throw new IllegalStateException("unreadable");
+        });
+        when(repository.saveAsync("valid", EMPTY_JSON)).thenReturn(Mono.just(mock(MutationResult.class)));
+
+        // When we import it with a valid one, Then only the unreadable document should fail
+        assertThrows(CouchmoveException.class, () -> new DocumentImporter(repository, 1)
+                .importDocuments(Stream.of(unreadable, new Document(null, null, "valid.json", "{}"))));
+        verify(repository).saveAsync("valid", EMPTY_JSON);
+    }
+
+    @Test
+    public void should_resume_import_from_checkpoint() {
+        // Given documents partially imported by a previous run
+        List<Document> documents = IntStream.range(0, 100)
+                .mapToObj(i -> new Document(null, null, "doc" + i + ".json", "{}"))
+                .collect(Collectors.toList());
+        when(repository.saveAsync(anyString(), any(byte[].class))).thenReturn(Mono.just(mock(MutationResult.class)));
+
+        // When we resume their import
+        ImportReport report = new DocumentImporter(repository, 8).importDocuments(documents.stream(), 60, checkpoint -> {
+        });
+
+        // Then only the remaining documents should be saved
+        assertThat(report.getImported()).isEqualTo(40);
+        assertThat(report.getSkipped()).isEqualTo(60);
+        assertThat(report.getCheckpoint()).isEqualTo(100);
+        verify(repository, never()).saveAsync("doc59", EMPTY_JSON);
+        verify(repository).saveAsync("doc60", EMPTY_JSON);
+    }
+
+    @Test
+    public void should_report_checkpoint_before_first_failure() {
+        // Given a failing document after valid ones
+        when(repository.saveAsync(anyString(), any(byte[].class))).thenReturn(Mono.just(mock(MutationResult.class)));
+        when(repository.saveAsync("doc3", EMPTY_JSON)).thenReturn(Mono.error(new IllegalStateException("invalid")));
+        List<Long> checkpoints = new ArrayList<>();
+
+        // When we import them, Then an exception should rise
+        assertThrows(CouchmoveException.class, () -> new DocumentImporter(repository, 4).importDocuments(IntStream.range(0, 10)
+                .mapToObj(i -> new Document(null, null, "doc" + i + ".json", "{}")), 0, checkpoints::add));
+
+        // And the checkpoint should stop at the failed document
+        assertThat(checkpoints).last().isEqualTo(3L);
+    }
+
+    @Test
+    public void should_skip_unchanged_documents() {
+        // Given a document already imported with the same content, and a changed one
+        when(repository.getContentHashAsync("unchanged")).thenReturn(Mono.just(DocumentImporter.hash(EMPTY_JSON)));
+        when(repository.getContentHashAsync("changed")).thenReturn(Mono.just(DocumentImporter.hash(INVALID_JSON)));
+        when(repository.getContentHashAsync("new")).thenReturn(Mono.empty());
+        when(repository.saveAsync(anyString(), any(byte[].class), anyString())).thenReturn(Mono.just(mock(MutationResult.class)));
+
+        // When we import them, skipping unchanged documents
+        ImportReport report = new DocumentImporter(repository, 2, true).importDocuments(Stream.of(
+                new Document(null, null, "unchanged.json", "{}"),
+                new Document(null, null, "changed.json", "{}"),
+                new Document(null, null, "new.json", "{}")));
+
+        // Then only changed and new documents should be saved with their hash
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getUnchanged()).isEqualTo(1);
+        assertThat(report.getCheckpoint()).isEqualTo(3);
+        verify(repository, never()).saveAsync(eq("unchanged"), any(byte[].class), anyString());
+        verify(repository).saveAsync("changed", EMPTY_JSON, DocumentImporter.hash(EMPTY_JSON));
+        verify(repository).saveAsync("new", EMPTY_JSON, DocumentImporter.hash(EMPTY_JSON));
+        verify(repository, never()).saveAsync(anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void should_collect_mutation_tokens_of_written_documents() {
+        // Given documents written in two partitions
+        MutationToken token1 = new MutationToken((short) 1, 11, 101, "default");
+        MutationToken token2 = new MutationToken((short) 2, 22, 202, "default");
+        when(repository.saveAsync("doc1", EMPTY_JSON)).thenReturn(Mono.just(mutationResult(token1)));
+        when(repository.saveAsync("doc2", EMPTY_JSON)).thenReturn(Mono.just(mutationResult(token2)));
+
+        // When we import them
+        ImportReport report = new DocumentImporter(repository, 2).importDocuments(Stream.of(
+                new Document(null, null, "doc1.json", "{}"),
+                new Document(null, null, "doc2.json", "{}")));
+
+        // Then the mutation tokens of both documents should be reported
+        assertThat(report.getMutationState()).containsExactlyInAnyOrder(token1, token2);
+    }
+
+    private static MutationResult mutationResult(MutationToken token) {
+        MutationResult result = mock(MutationResult.class);
+        when(result.mutationToken()).thenReturn(Optional.of(token));
+        return result;
+    }
+
+    @Test
+    public void should_move_watermark_only_when_all_previous_documents_are_completed() {
+        DocumentImporter.Watermark watermark = new DocumentImporter.Watermark(10);
+        watermark.complete(12);
+        watermark.complete(11);
+        assertThat(watermark.get()).isEqualTo(10);
+        watermark.complete(10);
+        assertThat(watermark.get()).isEqualTo(13);
+        watermark.complete(14);
+        assertThat(watermark.get()).isEqualTo(13);
+        watermark.complete(13);
+        assertThat(watermark.get()).isEqualTo(15);
+    }
+
+    @Test
+    public void should_not_accept_invalid_concurrency() {
+        assertThrows(IllegalArgumentException.class, () -> new DocumentImporter(repository, 0));
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.couchmove.service;
+
+import com.couchbase.client.java.query.QueryScanConsistency;
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.repository.QueryHints;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class N1qlScannerTest {
+
+    @Test
+    public void should_not_split_on_quoted_separators_and_comment_markers() throws IOException {
+        String request1 = "SELECT 'a;b' AS x, \"c--d\" AS y, `e;/*f` FROM `default` WHERE name = 'it''s' AND code = 'x\\'y;'";
+        String request2 = "SELECT 2-1, 4/2";
+
+        assertThat(scan(request1 + ";" + request2 + ";")).extracting(N1qlRequest::getStatement)
+                .containsExactly(request1, request2);
+    }
+
+    @Test
+    public void should_remove_comments_and_blank_requests() throws IOException {
+        String sql = "-- first request;\n" +
+                "SELECT/* comment; */1;\n" +
+                ";  ;\n" +
+                "/* multi-line\n comment */\n" +
+                "SELECT 2 -- end of line comment\n";
+
+        assertThat(scan(sql)).extracting(N1qlRequest::getStatement)
+                .containsExactly("SELECT 1", "SELECT 2");
+    }
+
+    @Test
+    public void should_apply_directives_to_following_request_only() throws IOException {
+        String sql = "-- @couchmove consistency=not_bounded\n" +
+                "SELECT 1;\n" +
+                "SELECT '-- @couchmove consistency=request_plus';";
+
+        assertThat(scan(sql)).containsExactly(
+                new N1qlRequest("SELECT 1", QueryHints.builder().consistency(QueryScanConsistency.NOT_BOUNDED).build()),
+                new N1qlRequest("SELECT '-- @couchmove consistency=request_plus'", QueryHints.DEFAULT));
+    }
+
+    @Test
+    public void should_scan_requests_larger_than_buffer() throws IOException {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sql.append("UPSERT INTO `default` (KEY, VALUE) VALUES ('user::").append(i).append("', {\"name\": \"a;b\"});\n");
+        }
+
+        List<N1qlRequest> requests = scan(sql.toString());
+
+        assertThat(requests).hasSize(1000);
+        assertThat(requests.get(999).getStatement()).isEqualTo("UPSERT INTO `default` (KEY, VALUE) VALUES ('user::999', {\"name\": \"a;b\"})");
+    }
+
+    @Test
+    public void should_fail_on_unterminated_string_or_comment() {
+        assertThrows(CouchmoveException.class, () -> scan("SELECT 'unterminated; SELECT 1;"));
+        assertThrows(CouchmoveException.class, () -> scan("SELECT `unterminated; SELECT 1;"));
+        assertThrows(CouchmoveException.class, () -> scan("SELECT 1 /* unterminated; SELECT 1;"));
+    }
+
+    private static List<N1qlRequest> scan(String sql) throws IOException {
+        List<N1qlRequest> requests = new ArrayList<>();
+        N1qlScanner scanner = new N1qlScanner(new StringReader(sql));
+        for (N1qlRequest request = scanner.next(); request != null; request = scanner.next()) {
+            requests.add(request);
+        }
+        return requests;
+    }
+}
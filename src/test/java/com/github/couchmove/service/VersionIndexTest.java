@@ -0,0 +1,47 @@
+package com.github.couchmove.service;
+
+import com.github.couchmove.pojo.ChangeLog;
+import com.github.couchmove.pojo.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.github.couchmove.pojo.Status.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VersionIndexTest {
+
+    @Test
+    public void should_find_pending_change_logs_after_last_executed() {
+        // Given unsorted change logs, with one that was skipped and one lower than the last executed one
+        ChangeLog v1 = changeLog("1", EXECUTED);
+        ChangeLog v1_1 = changeLog("1.1", SKIPPED);
+        ChangeLog v1_5 = changeLog("1.5", null);
+        ChangeLog v2 = changeLog("2", EXECUTED);
+        ChangeLog v10 = changeLog("10", FAILED);
+        ChangeLog v11 = changeLog("11", null);
+
+        // When we index them
+        VersionIndex index = new VersionIndex(Arrays.asList(v11, v2, v1_5, v10, v1, v1_1));
+
+        // Then they should be sorted by version
+        assertThat(index.getChangeLogs()).containsExactly(v1, v1_1, v1_5, v2, v10, v11);
+        assertThat(index.getLastExecuted()).contains(v2);
+        assertThat(index.getPending()).containsExactly(v10, v11);
+    }
+
+    @Test
+    public void should_have_all_change_logs_pending_when_none_was_executed() {
+        ChangeLog v1 = changeLog("1", null);
+        ChangeLog v2 = changeLog("2", FAILED);
+
+        VersionIndex index = new VersionIndex(Arrays.asList(v2, v1));
+
+        assertThat(index.getLastExecuted()).isEmpty();
+        assertThat(index.getPending()).containsExactly(v1, v2);
+    }
+
+    private static ChangeLog changeLog(String version, Status status) {
+        return ChangeLog.builder().version(version).status(status).build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.couchmove.utils;
+
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.Document;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.github.couchmove.utils.TestUtils.getRandomString;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ArchiveDocumentReaderTest {
+
+    @Test
+    public void should_detect_archives() {
+        assertThat(ArchiveDocumentReader.isArchive(new File("V1__users.zip").toPath())).isTrue();
+        assertThat(ArchiveDocumentReader.isArchive(new File("V1__users.tar.gz").toPath())).isTrue();
+        assertThat(ArchiveDocumentReader.isArchive(new File("V1__users.TGZ").toPath())).isTrue();
+        assertThat(ArchiveDocumentReader.isArchive(new File("V1__users.json").toPath())).isFalse();
+    }
+
+    @Test
+    public void should_read_documents_from_zip() throws IOException {
+        // Given a zip archive
+        Path archive = Files.createTempFile(getRandomString(), ".zip");
+        archive.toFile().deleteOnExit();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("test/"));
+            zip.putNextEntry(new ZipEntry("test/user/"));
+            writeZipEntry(zip, "toto.json", "{\"name\":\"toto\"}");
+            writeZipEntry(zip, "readme.txt", "ignored");
+            writeZipEntry(zip, "user/titi.json", "{\"name\":\"titi\"}");
+            writeZipEntry(zip, "test/user/tata.json", "{\"name\":\"tata\"}");
+        }
+
+        // When we read it, Then we should get its json documents
+        assertThat(read(archive))
+                .extracting(Document::getScope, Document::getCollection, Document::getKey, document -> new String(document.getContent(), UTF_8))
+                .containsExactly(
+                        tuple(null, null, "toto", "{\"name\":\"toto\"}"),
+                        tuple(null, "user", "titi", "{\"name\":\"titi\"}"),
+                        tuple("test", "user", "tata", "{\"name\":\"tata\"}"));
+    }
+
+    @Test
+    public void should_read_documents_from_tar_gz() throws IOException {
+        // Given a tar.gz archive
+        Path archive = Files.createTempFile(getRandomString(), ".tar.gz");
+        archive.toFile().deleteOnExit();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(Files.newOutputStream(archive)))) {
+            writeTarEntry(tar, "./toto.json", "{\"name\":\"toto\"}");
+            writeTarEntry(tar, "./test/user/tata.json", "{\"name\":\"tata\"}");
+        }
+
+        // When we read it, Then we should get its json documents
+        assertThat(read(archive))
+                .extracting(Document::getPath, document -> new String(document.getContent(), UTF_8))
+                .containsExactly(
+                        tuple("toto.json", "{\"name\":\"toto\"}"),
+                        tuple("test/user/tata.json", "{\"name\":\"tata\"}"));
+    }
+
+    @Test
+    public void should_fail_on_unreadable_entry() throws IOException {
+        // Given an archive with an entry whose data can't be read
+        ArchiveInputStream archive = mock(ArchiveInputStream.class);
+        ArchiveEntry entry = new ZipArchiveEntry("user/encrypted.json");
+        when(archive.getNextEntry()).thenReturn(entry);
+        when(archive.canReadEntryData(entry)).thenReturn(false);
+
+        // When we read it, Then it should fail naming the entry
+        ArchiveDocumentReader reader = new ArchiveDocumentReader(archive, "json");
+        CouchmoveException exception = assertThrows(CouchmoveException.class, reader::hasNext);
+        assertThat(exception).hasMessageContaining("user/encrypted.json");
+    }
+
+    @Test
+    public void should_skip_too_deep_entries() throws IOException {
+        // Given a zip archive with a document nested deeper than scope/collection
+        Path archive = Files.createTempFile(getRandomString(), ".zip");
+        archive.toFile().deleteOnExit();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            writeZipEntry(zip, "a/b/c/toto.json", "{\"name\":\"toto\"}");
+            writeZipEntry(zip, "user/titi.json", "{\"name\":\"titi\"}");
+        }
+
+        // When we read it, Then only the documents of the supported layout should be read
+        assertThat(read(archive)).extracting(Document::getPath).containsExactly("user/titi.json");
+    }
+
+    private static List<Document> read(Path archive) {
+        try (Stream<Document> documents = ArchiveDocumentReader.read(archive, "json")) {
+            return documents.collect(Collectors.toList());
+        }
+    }
+
+    private static void writeZipEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        write(zip, content);
+        zip.closeEntry();
+    }
+
+    private static void writeTarEntry(TarArchiveOutputStream tar, String name, String content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.getBytes(UTF_8).length);
+        tar.putArchiveEntry(entry);
+        write(tar, content);
+        tar.closeArchiveEntry();
+    }
+
+    private static void write(OutputStream outputStream, String content) throws IOException {
+        outputStream.write(content.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.couchmove.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChecksumCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void should_reuse_checksum_of_unchanged_file_between_runs() throws IOException {
+        // Given a file whose checksum was cached by a previous run
+        Path file = Files.write(tempDir.resolve("V1__user.json"), "{}".getBytes(UTF_8));
+        Path cacheFile = tempDir.resolve("cache/checksums.properties");
+        AtomicInteger hashes = new AtomicInteger();
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        assertThat(cache.get(file, "SHA_256", () -> "checksum" + hashes.incrementAndGet())).isEqualTo("checksum1");
+        cache.save();
+
+        // When we get its checksum in a new run, Then it should come from the cache
+        assertThat(new ChecksumCache(cacheFile).get(file, "SHA_256", () -> "checksum" + hashes.incrementAndGet())).isEqualTo("checksum1");
+        assertThat(hashes.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_hash_again_modified_file() throws IOException {
+        // Given a cached file
+        Path file = Files.write(tempDir.resolve("V1__user.json"), "{}".getBytes(UTF_8));
+        Path cacheFile = tempDir.resolve("checksums.properties");
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        cache.get(file, "SHA_256", () -> "old");
+        cache.save();
+
+        // When it is modified
+        Files.write(file, "{\"name\":\"toto\"}".getBytes(UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+
+        // Then its checksum should be calculated again
+        assertThat(new ChecksumCache(cacheFile).get(file, "SHA_256", () -> "new")).isEqualTo("new");
+    }
+
+    @Test
+    public void should_ignore_unreadable_cache() throws IOException {
+        Path file = Files.write(tempDir.resolve("V1__user.json"), "{}".getBytes(UTF_8));
+        Path cacheFile = Files.write(tempDir.resolve("checksums.properties"), "\\u00".getBytes(UTF_8));
+
+        assertThat(new ChecksumCache(cacheFile).get(file, "SHA_256", () -> "checksum")).isEqualTo("checksum");
+    }
+}
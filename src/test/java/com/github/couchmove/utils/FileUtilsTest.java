@@ -1,7 +1,13 @@
 package com.github.couchmove.utils;
 
+import com.github.couchmove.pojo.ChecksumAlgorithm;
 import com.github.couchmove.pojo.Document;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
+import lombok.SneakyThrows;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.Blake3;
+import org.apache.commons.codec.digest.DigestUtils;
 import lombok.var;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -10,7 +16,13 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.github.couchmove.pojo.Type.DESIGN_DOC;
@@ -18,6 +30,7 @@ import static com.github.couchmove.pojo.Type.N1QL;
 import static com.github.couchmove.utils.TestUtils.getRandomString;
 import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -63,6 +76,46 @@ public class FileUtilsTest {
         assertThat(FileUtils.calculateChecksum(FileUtils.getPathFromResource(path), DESIGN_DOC.getExtension(), N1QL.getExtension())).as(path).isEqualTo(expectedChecksum);
     }
 
+    @Test
+    public void should_calculate_checksums_of_multiple_files_or_folders() throws Exception {
+        // Given files and folders
+        List<Path> paths = fileSource()
+                .map(arguments -> (String) arguments.get()[0])
+                .map(FileUtilsTest::getPath)
+                .collect(Collectors.toList());
+
+        // When we calculate their checksums at once
+        Map<Path, String> checksums = FileUtils.calculateChecksums(paths, DESIGN_DOC.getExtension(), N1QL.getExtension());
+
+        // Then they should be the same as one by one
+        assertThat(checksums.keySet()).containsExactlyElementsOf(paths);
+        paths.forEach(path -> assertThat(checksums.get(path)).as(path.toString())
+                .isEqualTo(FileUtils.calculateChecksum(path, DESIGN_DOC.getExtension(), N1QL.getExtension())));
+    }
+
+    @Test
+    public void should_calculate_checksum_with_other_algorithms() throws IOException {
+        // Given a file larger than the checksum buffer
+        File file = File.createTempFile(getRandomString(), ".json");
+        file.deleteOnExit();
+        byte[] content = new byte[FileUtils.CHECKSUM_BUFFER_SIZE * 2 + 17];
+        new Random(42).nextBytes(content);
+        Files.write(content, file);
+
+        // When we calculate its checksum with other algorithms, Then they should be the same as hashing the whole content at once
+        assertThat(FileUtils.calculateChecksum(file.toPath(), ChecksumAlgorithm.MURMUR3_128))
+                .isEqualTo(Hashing.murmur3_128().hashBytes(content).toString());
+        assertThat(FileUtils.calculateChecksum(file.toPath(), ChecksumAlgorithm.BLAKE3))
+                .isEqualTo(Hex.encodeHexString(Blake3.hash(content)));
+        assertThat(FileUtils.calculateChecksum(file.toPath(), ChecksumAlgorithm.SHA_256))
+                .isEqualTo(DigestUtils.sha256Hex(content));
+    }
+
+    @SneakyThrows
+    private static Path getPath(String resource) {
+        return FileUtils.getPathFromResource(resource);
+    }
+
     @Test
     public void should_read_files_failed_if_not_exists() throws Exception {
         assertThrows(IllegalArgumentException.class, () -> FileUtils.readFilesInDirectory(new File(TestUtils.getRandomString()).toPath()));
@@ -106,7 +159,10 @@ public class FileUtilsTest {
         Files.write(content4.getBytes(), file4);
 
         // When we read files in this directory with extension filter
-        var results = FileUtils.readFilesInDirectory(tempDir.toPath(), "json", "n1ql");
+        List<Document> results;
+        try (Stream<Document> documents = FileUtils.readFilesInDirectory(tempDir.toPath(), "json", "n1ql")) {
+            results = documents.collect(Collectors.toList());
+        }
 
         // Then we should have file content matching this extension
         assertThat(results).hasSize(4);
@@ -116,5 +172,53 @@ public class FileUtilsTest {
                 new Document(scope, collection, file3.getName(), content3),
                 new Document(null, collection, file4.getName(), content4)
         );
+        assertThat(results)
+                .extracting(Document::getPath, Document::getContent)
+                .containsExactlyInAnyOrder(
+                        tuple(file1.getName(), content1.getBytes()),
+                        tuple(file2.getName(), content2.getBytes()),
+                        tuple(scope + "/" + collection + "/" + file3.getName(), content3.getBytes()),
+                        tuple(collection + "/" + file4.getName(), content4.getBytes())
+                );
+    }
+
+    @Test
+    public void should_keep_file_system_order_of_same_named_files_in_checksum_and_sort_documents() throws IOException {
+        // Given files with the same name in two collections
+        File tempDir = Files.createTempDir();
+        tempDir.deleteOnExit();
+        for (String collection : new String[]{"c2", "c1"}) {
+            File collectionDir = new File(tempDir, "scope/" + collection);
+            collectionDir.mkdirs();
+            Files.write(collection.getBytes(), new File(collectionDir, "1.json"));
+        }
+
+        // When we calculate the checksum of the directory
+        String checksum = FileUtils.calculateChecksum(tempDir.toPath(), "json");
+
+        // Then it should hash the files in file system order, as checksums already stored in the database
+        String concatenatedChecksums = listInFileSystemOrder(tempDir.toPath()).stream()
+                .map(path -> DigestUtils.sha256Hex(path.getParent().getFileName().toString()))
+                .collect(Collectors.joining());
+        assertThat(checksum).isEqualTo(DigestUtils.sha256Hex(concatenatedChecksums));
+
+        // And documents should be read sorted by path
+        try (Stream<Document> documents = FileUtils.readFilesInDirectory(tempDir.toPath(), "json")) {
+            assertThat(documents).extracting(Document::getPath).containsExactly("scope/c1/1.json", "scope/c2/1.json");
+        }
+    }
+
+    private static List<Path> listInFileSystemOrder(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = java.nio.file.Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (java.nio.file.Files.isDirectory(entry)) {
+                    files.addAll(listInFileSystemOrder(entry));
+                } else {
+                    files.add(entry);
+                }
+            }
+        }
+        return files;
     }
 }
@@ -0,0 +1,82 @@
+package com.github.couchmove.utils;
+
+import com.github.couchmove.exception.CouchmoveException;
+import com.github.couchmove.pojo.Document;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonDocumentReaderTest {
+
+    @Test
+    public void should_read_json_lines() throws IOException {
+        String content = "{\"id\": \"toto\", \"age\": 10}\n" +
+                "\n" +
+                "{\"id\": \"titi\", \"age\": 20, \"_scope\": \"test\", \"_collection\": \"user\"}\n";
+
+        List<Document> documents = read(content, JsonDocumentReader.DEFAULT_KEY);
+
+        assertThat(documents)
+                .extracting(Document::getScope, Document::getCollection, Document::getKey, Document::getPath)
+                .containsExactly(
+                        tuple(null, null, "toto", "#0"),
+                        tuple("test", "user", "titi", "#1"));
+        assertThat(new String(documents.get(1).getContent(), UTF_8)).isEqualTo("{\"id\":\"titi\",\"age\":20}");
+    }
+
+    @Test
+    public void should_read_json_array() throws IOException {
+        String content = "[\n" +
+                "  {\"id\": 1, \"name\": \"toto\"},\n" +
+                "  {\"id\": 2, \"name\": \"titi\"}\n" +
+                "]";
+
+        List<Document> documents = read(content, JsonDocumentReader.DEFAULT_KEY);
+
+        assertThat(documents).extracting(Document::getKey).containsExactly("1", "2");
+        assertThat(new String(documents.get(0).getContent(), UTF_8)).isEqualTo("{\"id\": 1, \"name\": \"toto\"}");
+    }
+
+    @Test
+    public void should_keep_exact_decimals() throws IOException {
+        String content = "{\"id\": \"toto\", \"price\": 1.10, \"ratio\": 0.1000000000000000055511}\n" +
+                "{\"id\": \"titi\", \"price\": 1.10, \"ratio\": 0.1000000000000000055511, \"_collection\": \"user\"}\n";
+
+        List<Document> documents = read(content, JsonDocumentReader.DEFAULT_KEY);
+
+        assertThat(new String(documents.get(0).getContent(), UTF_8)).isEqualTo("{\"id\": \"toto\", \"price\": 1.10, \"ratio\": 0.1000000000000000055511}");
+        assertThat(new String(documents.get(1).getContent(), UTF_8)).isEqualTo("{\"id\":\"titi\",\"price\":1.10,\"ratio\":0.1000000000000000055511}");
+    }
+
+    @Test
+    public void should_build_key_from_expression() throws IOException {
+        String content = "{\"type\": \"user\", \"name\": \"toto\"}";
+
+        assertThat(read(content, "${type}::${name}")).extracting(Document::getKey).containsExactly("user::toto");
+    }
+
+    @Test
+    public void should_fail_if_key_is_missing() {
+        assertThrows(CouchmoveException.class, () -> read("{\"name\": \"toto\"}", JsonDocumentReader.DEFAULT_KEY));
+        assertThrows(CouchmoveException.class, () -> read("{\"name\": \"toto\"}", "${type}::${name}"));
+    }
+
+    @Test
+    public void should_fail_if_document_is_not_an_object() {
+        assertThrows(CouchmoveException.class, () -> read("[\"toto\"]", JsonDocumentReader.DEFAULT_KEY));
+    }
+
+    private static List<Document> read(String content, String keyExpression) throws IOException {
+        try (JsonDocumentReader reader = new JsonDocumentReader(new ByteArrayInputStream(content.getBytes(UTF_8)), keyExpression)) {
+            return Lists.newArrayList(reader);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.couchmove.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TokenBucketTest {
+
+    @Test
+    public void should_grant_burst_without_waiting() {
+        TokenBucket bucket = new TokenBucket("operations", 100);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(bucket.reserve(1)).isZero();
+        }
+
+        assertThat(bucket.getStallTime()).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    public void should_wait_for_permits_beyond_burst() {
+        // Given a bucket in debt of 500 permits
+        TokenBucket bucket = new TokenBucket("bytes", 1000);
+        assertThat(bucket.reserve(1000)).isZero();
+        assertThat(bucket.reserve(500)).isZero();
+
+        // When we take more permits, Then we should wait until the debt is paid back
+        long waitNanos = bucket.reserve(1);
+        assertThat((double) waitNanos).isCloseTo(TimeUnit.MILLISECONDS.toNanos(500), within((double) TimeUnit.MILLISECONDS.toNanos(50)));
+        assertThat(bucket.getStallTime().toNanos()).isEqualTo(waitNanos);
+    }
+
+    @Test
+    public void should_grant_requests_larger_than_capacity() {
+        TokenBucket bucket = new TokenBucket("bytes", 10);
+
+        // A request larger than the capacity is granted by going into debt, the next one pays it back
+        assertThat(bucket.reserve(100)).isZero();
+        assertThat(bucket.reserve(10)).isGreaterThan(TimeUnit.SECONDS.toNanos(8));
+    }
+
+    @Test
+    public void should_not_accept_invalid_rate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket("operations", 0));
+    }
+}